@@ -0,0 +1,129 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.DbServiceApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Boots the application against an in-memory H2 stand-in for PostgreSQL and
+ * seeds a synthetic catalogue of the requested size.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    static final int GENRES = 20;
+    static final int USERS = 1_000;
+
+    private final ConfigurableApplicationContext context;
+    private final List<Integer> movieIds;
+    private final List<Integer> userIds;
+
+    private BenchmarkDatabase(ConfigurableApplicationContext context, List<Integer> movieIds, List<Integer> userIds) {
+        this.context = context;
+        this.movieIds = movieIds;
+        this.userIds = userIds;
+    }
+
+    static BenchmarkDatabase start(int movies) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DbServiceApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench" + movies + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.grpc.server.port=0",
+                        "grpc.server.port=0",
+                        "cineflix.ratings.reconcile.initial-delay-ms=86400000")
+                .run();
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        Random random = new Random(42);
+
+        tx.executeWithoutResult(status -> seedMovies(jdbc, movies));
+        List<Integer> movieIds = jdbc.queryForList("select id from movies order by id", Integer.class);
+        tx.executeWithoutResult(status -> seedMovieCollections(jdbc, movieIds, random));
+        tx.executeWithoutResult(status -> seedUsers(jdbc));
+        List<Integer> userIds = jdbc.queryForList("select id from users order by id", Integer.class);
+        tx.executeWithoutResult(status -> seedFavorites(jdbc, userIds, movieIds, random));
+        return new BenchmarkDatabase(context, movieIds, userIds);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    int movieId(Random random) {
+        return movieIds.get(random.nextInt(movieIds.size()));
+    }
+
+    int userId(Random random) {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    static String genre(int index) {
+        return "Genre " + index;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static void seedMovies(JdbcTemplate jdbc, int movies) {
+        List<Object[]> rows = new ArrayList<>(movies);
+        for (int i = 0; i < movies; i++) {
+            rows.add(new Object[]{"Movie " + i, 90 + i % 90, java.sql.Date.valueOf("2000-01-01"),
+                    "Synthetic description for movie " + i, "https://posters.example/" + i + ".jpg"});
+        }
+        jdbc.batchUpdate("insert into movies (title, run_time, release_date, rating, rating_sum, review_count, description, poster_url) " +
+                "values (?, ?, ?, 0, 0, 0, ?, ?)", rows);
+    }
+
+    private static void seedMovieCollections(JdbcTemplate jdbc, List<Integer> movieIds, Random random) {
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> directors = new ArrayList<>();
+        List<Object[]> actors = new ArrayList<>();
+        for (Integer id : movieIds) {
+            int firstGenre = random.nextInt(GENRES);
+            for (int g = 0; g < 3; g++) {
+                genres.add(new Object[]{id, genre((firstGenre + g) % GENRES)});
+            }
+            directors.add(new Object[]{id, "Director " + random.nextInt(movieIds.size() / 10 + 1)});
+            for (int a = 0; a < 8; a++) {
+                actors.add(new Object[]{id, "Actor " + random.nextInt(movieIds.size() / 2 + 1) + "-" + a});
+            }
+        }
+        jdbc.batchUpdate("insert into movie_genres (movie_id, genre) values (?, ?)", genres);
+        jdbc.batchUpdate("insert into movie_directors (movie_id, director) values (?, ?)", directors);
+        jdbc.batchUpdate("insert into movie_actors (movie_id, actor) values (?, ?)", actors);
+    }
+
+    private static void seedUsers(JdbcTemplate jdbc) {
+        List<Object[]> rows = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            rows.add(new Object[]{"user" + i, "user" + i + "@cineflix.example", "hash", "USER"});
+        }
+        jdbc.batchUpdate("insert into users (username, email, hashed_password, user_role) values (?, ?, ?, ?)", rows);
+    }
+
+    private static void seedFavorites(JdbcTemplate jdbc, List<Integer> userIds, List<Integer> movieIds, Random random) {
+        List<Object[]> rows = new ArrayList<>();
+        int perUser = Math.min(25, movieIds.size());
+        for (Integer userId : userIds) {
+            // consecutive ids from a random start keep (user_id, movie_id) unique, as uk_user_favorites_user_movie requires
+            int start = random.nextInt(movieIds.size());
+            for (int f = 0; f < perUser; f++) {
+                rows.add(new Object[]{userId, movieIds.get((start + f) % movieIds.size())});
+            }
+        }
+        jdbc.batchUpdate("insert into user_favorites (user_id, movie_id, added_on) values (?, ?, current_timestamp)", rows);
+    }
+}
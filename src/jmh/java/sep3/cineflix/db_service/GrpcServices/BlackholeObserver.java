@@ -0,0 +1,27 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.infra.Blackhole;
+
+final class BlackholeObserver<T> implements StreamObserver<T> {
+
+    private final Blackhole blackhole;
+
+    BlackholeObserver(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void onNext(T value) {
+        blackhole.consume(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        throw new IllegalStateException(t);
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+}
@@ -0,0 +1,48 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sep3.cineflix.grpc.GetAllMoviesRequest;
+import sep3.cineflix.grpc.GetMoviesByGenreRequest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class CatalogueBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogueSize;
+
+    private BenchmarkDatabase database;
+    private MovieServiceImpl movieService;
+    private final Random random = new Random(7);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.start(catalogueSize);
+        movieService = database.bean(MovieServiceImpl.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void getAllMovies(Blackhole blackhole) {
+        movieService.getAllMovies(GetAllMoviesRequest.getDefaultInstance(), new BlackholeObserver<>(blackhole));
+    }
+
+    @Benchmark
+    public void getMoviesByGenre(Blackhole blackhole) {
+        GetMoviesByGenreRequest request = GetMoviesByGenreRequest.newBuilder()
+                .setGenre(BenchmarkDatabase.genre(random.nextInt(BenchmarkDatabase.GENRES)))
+                .build();
+        movieService.getMoviesByGenre(request, new BlackholeObserver<>(blackhole));
+    }
+}
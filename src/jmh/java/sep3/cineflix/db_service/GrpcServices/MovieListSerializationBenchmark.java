@@ -0,0 +1,91 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import org.openjdk.jmh.annotations.*;
+import sep3.cineflix.db_service.Entities.Movie;
+import sep3.cineflix.grpc.GetAllMoviesResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing the wire bytes of a GetAllMovies response: building every
+ * MovieResponse from its entity and encoding it (the old path) versus
+ * attaching the cached encodings. Run with -PjmhProfilers=gc and compare
+ * gc.alloc.rate.norm for the bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MovieListSerializationBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogueSize;
+
+    private MovieServiceImpl service;
+    private List<Movie> movies;
+    private List<ByteString> serialized;
+
+    @Setup
+    public void setUp() {
+        service = new MovieServiceImpl(null, null, null, null, null, null, null, null, null, 200, 1000, 3);
+        movies = new ArrayList<>(catalogueSize);
+        serialized = new ArrayList<>(catalogueSize);
+        for (int i = 1; i <= catalogueSize; i++) {
+            Movie movie = Movie.builder()
+                    .id(i)
+                    .title("Movie " + i)
+                    .genres(names("Genre ", i, 3))
+                    .directors(names("Director ", i, 1))
+                    .actors(names("Actor ", i, 10))
+                    .runTime(90 + i % 90)
+                    .releaseDate(LocalDate.of(1970 + i % 55, 1 + i % 12, 1 + i % 28))
+                    .rating((i % 100) / 10.0)
+                    .description("Description of movie " + i)
+                    .posterUrl("https://posters.example/" + i + ".jpg")
+                    .build();
+            movies.add(movie);
+            serialized.add(service.toMovieResponse(movie).toByteString());
+        }
+    }
+
+    @Benchmark
+    public int rebuildAndEncode() throws IOException {
+        GetAllMoviesResponse.Builder builder = GetAllMoviesResponse.newBuilder();
+        for (Movie movie : movies) {
+            builder.addMovies(service.toMovieResponse(movie));
+        }
+        return write(builder.build());
+    }
+
+    @Benchmark
+    public int attachCachedBytes() throws IOException {
+        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder()
+                .setUnknownFields(SerializedMovies.asField(GetAllMoviesResponse.MOVIES_FIELD_NUMBER, serialized))
+                .build();
+        return write(response);
+    }
+
+    // gRPC streams the message into its own buffers, so a discarding stream stands in for the transport.
+    private static int write(GetAllMoviesResponse response) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(OutputStream.nullOutputStream());
+        response.writeTo(output);
+        output.flush();
+        return response.getSerializedSize();
+    }
+
+    private static Set<String> names(String prefix, int seed, int count) {
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + (seed * 31 + i) % 5000);
+        }
+        return names;
+    }
+}
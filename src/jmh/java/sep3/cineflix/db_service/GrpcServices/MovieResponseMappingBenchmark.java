@@ -0,0 +1,61 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import org.openjdk.jmh.annotations.*;
+import sep3.cineflix.db_service.Entities.Movie;
+import sep3.cineflix.grpc.MovieResponse;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MovieResponseMappingBenchmark {
+
+    private MovieServiceImpl service;
+    private Movie movie;
+    private MovieResponse response;
+
+    @Setup
+    public void setUp() {
+        service = new MovieServiceImpl(null, null, null, null, null, null, null, null, null, 200, 1000, 3);
+        movie = Movie.builder()
+                .id(42)
+                .title("Heat")
+                .genres(names("Genre ", 5))
+                .directors(names("Director ", 3))
+                .actors(names("Actor ", 40))
+                .runTime(170)
+                .releaseDate(LocalDate.of(1995, 12, 15))
+                .rating(8.3)
+                .description("A group of high-end professional thieves start to feel the heat from the LAPD.")
+                .posterUrl("https://posters.example/heat.jpg")
+                .build();
+        response = service.toMovieResponse(movie);
+    }
+
+    @Benchmark
+    public MovieResponse toMovieResponse() {
+        return service.toMovieResponse(movie);
+    }
+
+    @Benchmark
+    public byte[] toMovieResponseAndSerialize() {
+        return service.toMovieResponse(movie).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serializeBuiltResponse() {
+        return response.toByteArray();
+    }
+
+    private static Set<String> names(String prefix, int count) {
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,64 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sep3.cineflix.grpc.CreateReviewRequest;
+import sep3.cineflix.grpc.userlibrary.AddFavoriteRequest;
+import sep3.cineflix.grpc.userlibrary.GetFavoritesRequest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReviewAndLibraryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogueSize;
+
+    private BenchmarkDatabase database;
+    private ReviewServiceImpl reviewService;
+    private UserLibraryServiceImpl libraryService;
+    private final Random random = new Random(11);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.start(catalogueSize);
+        reviewService = database.bean(ReviewServiceImpl.class);
+        libraryService = database.bean(UserLibraryServiceImpl.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void createReview(Blackhole blackhole) {
+        CreateReviewRequest request = CreateReviewRequest.newBuilder()
+                .setMovieId(database.movieId(random))
+                .setUserId(database.userId(random))
+                .setText("Benchmark review")
+                .setRating(random.nextInt(11))
+                .build();
+        reviewService.createReview(request, new BlackholeObserver<>(blackhole));
+    }
+
+    @Benchmark
+    public void getFavorites(Blackhole blackhole) {
+        GetFavoritesRequest request = GetFavoritesRequest.newBuilder()
+                .setUserId(database.userId(random))
+                .build();
+        libraryService.getFavorites(request, new BlackholeObserver<>(blackhole));
+    }
+
+    @Benchmark
+    public void addFavorite(Blackhole blackhole) {
+        AddFavoriteRequest request = AddFavoriteRequest.newBuilder()
+                .setUserId(database.userId(random))
+                .setMovieId(database.movieId(random))
+                .build();
+        libraryService.addFavorite(request, new BlackholeObserver<>(blackhole));
+    }
+}
@@ -0,0 +1,182 @@
+package sep3.cineflix.db_service.LoadTest;
+
+import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import sep3.cineflix.grpc.GetAllMoviesRequest;
+import sep3.cineflix.grpc.GetAllMoviesResponse;
+import sep3.cineflix.grpc.GetAllReviewsResponse;
+import sep3.cineflix.grpc.GetReviewsByMovieRequest;
+import sep3.cineflix.grpc.MovieServiceGrpc;
+import sep3.cineflix.grpc.ReviewServiceGrpc;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Open-loop load generator for a running server: GetAllMovies and
+ * GetReviewsByMovie are each issued at a fixed rate, and latency is measured
+ * from when a call was due rather than when it was sent, so a stalled server
+ * shows up in the tail instead of silently lowering the request rate.
+ * <p>
+ * Compare transport settings by running the server twice, e.g. once with
+ * {@code --cineflix.grpc.compression.enabled=false} and the default windows,
+ * and once with the tuned properties; {@code --gzip=false} makes this client
+ * stop advertising gzip instead. Run with
+ * {@code ./gradlew loadTest -PloadTestArgs="--target=localhost:9090 --movies-rate=5 --reviews-rate=200"}.
+ */
+public final class GrpcLoadTest {
+
+    private GrpcLoadTest() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parse(args);
+        String target = options.getOrDefault("target", "localhost:9090");
+        boolean gzip = Boolean.parseBoolean(options.getOrDefault("gzip", "true"));
+        double moviesRate = Double.parseDouble(options.getOrDefault("movies-rate", "5"));
+        double reviewsRate = Double.parseDouble(options.getOrDefault("reviews-rate", "200"));
+        int maxMovieId = Integer.parseInt(options.getOrDefault("max-movie-id", "1000"));
+        int reviewsLimit = Integer.parseInt(options.getOrDefault("reviews-limit", "50"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup-seconds", "15"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration-seconds", "60"));
+        int maxOutstanding = Integer.parseInt(options.getOrDefault("max-outstanding", "1000"));
+        long deadlineMs = Long.parseLong(options.getOrDefault("deadline-ms", "30000"));
+
+        ManagedChannel channel = NettyChannelBuilder.forTarget(target)
+                .usePlaintext()
+                .maxInboundMessageSize(Integer.MAX_VALUE)
+                .decompressorRegistry(gzip ? DecompressorRegistry.getDefaultInstance() : DecompressorRegistry.emptyInstance())
+                .build();
+        MovieServiceGrpc.MovieServiceStub movies = MovieServiceGrpc.newStub(channel);
+        ReviewServiceGrpc.ReviewServiceStub reviews = ReviewServiceGrpc.newStub(channel);
+
+        List<Scenario<?>> scenarios = List.of(
+                new Scenario<GetAllMoviesResponse>("GetAllMovies", moviesRate, maxOutstanding,
+                        observer -> movies.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                                .getAllMovies(GetAllMoviesRequest.getDefaultInstance(), observer)),
+                new Scenario<GetAllReviewsResponse>("GetReviewsByMovie", reviewsRate, maxOutstanding,
+                        observer -> reviews.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS)
+                                .getReviewsByMovie(GetReviewsByMovieRequest.newBuilder()
+                                        .setMovieId(ThreadLocalRandom.current().nextInt(1, maxMovieId + 1))
+                                        .setLimit(reviewsLimit)
+                                        .build(), observer)));
+
+        System.out.printf("target=%s gzip=%s warmup=%ds duration=%ds%n", target, gzip, warmupSeconds, durationSeconds);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(scenarios.size());
+        scenarios.forEach(scenario -> scenario.start(scheduler));
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        scenarios.forEach(Scenario::reset);
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        scenarios.forEach(Scenario::report);
+
+        scheduler.shutdownNow();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static final class Scenario<T> {
+        private final String name;
+        private final long periodNanos;
+        private final int maxOutstanding;
+        private final Consumer<StreamObserver<T>> call;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong shed = new AtomicLong();
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long startedAt;
+        private long sent;
+
+        Scenario(String name, double ratePerSecond, int maxOutstanding, Consumer<StreamObserver<T>> call) {
+            this.name = name;
+            this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+            this.maxOutstanding = maxOutstanding;
+            this.call = call;
+        }
+
+        void start(ScheduledExecutorService scheduler) {
+            startedAt = System.nanoTime();
+            scheduler.scheduleAtFixedRate(this::fire, 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        // A scheduler that falls behind runs the missed ticks back to back; each still counts from its own due time.
+        private void fire() {
+            long due = startedAt + sent++ * periodNanos;
+            if (outstanding.incrementAndGet() > maxOutstanding) {
+                outstanding.decrementAndGet();
+                shed.incrementAndGet();
+                return;
+            }
+            call.accept(new StreamObserver<>() {
+                @Override
+                public void onNext(T value) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    outstanding.decrementAndGet();
+                    errors.incrementAndGet();
+                }
+
+                @Override
+                public void onCompleted() {
+                    outstanding.decrementAndGet();
+                    record(System.nanoTime() - due);
+                }
+            });
+        }
+
+        private synchronized void record(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+
+        synchronized void reset() {
+            count = 0;
+            errors.set(0);
+            shed.set(0);
+        }
+
+        synchronized void report() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("%-18s ok=%d errors=%d shed=%d p50=%s p90=%s p99=%s p99.9=%s max=%s%n",
+                    name, count, errors.get(), shed.get(),
+                    millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999),
+                    millis(sorted, 1.0));
+        }
+
+        private static String millis(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return "-";
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+            return String.format("%.2fms", sorted[Math.max(0, index)] / 1_000_000.0);
+        }
+    }
+}
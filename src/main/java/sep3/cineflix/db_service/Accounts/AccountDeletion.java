@@ -0,0 +1,137 @@
+package sep3.cineflix.db_service.Accounts;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Cache.UserCache;
+import sep3.cineflix.db_service.Changes.ChangeOutbox;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+import sep3.cineflix.db_service.Index.MovieLeaderboards;
+import sep3.cineflix.db_service.Jobs.RatingRecomputeQueue;
+import sep3.cineflix.db_service.Recommendations.MovieRecommender;
+import sep3.cineflix.db_service.Repositories.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Deletes user accounts together with everything that references them, using
+ * set-based statements only: no review, favorite or watchlist row is loaded.
+ * <p>
+ * Accounts are processed in chunks, each in its own short transaction, so
+ * purging thousands of users never holds locks for long. Per chunk this
+ * collects the movies that lose reviews, deletes reviews, favorites, watchlist
+ * entries and users, and then recomputes the ratings of just those movies in a
+ * single aggregate UPDATE (or queues them when async rating recomputation is on).
+ * Trending counts catch up with removed reviews on the next leaderboard rebuild.
+ * The change stream gets one USER DELETED event per account and one MOVIE
+ * UPDATED event per movie whose rating changes, rather than one per removed
+ * review or library entry. They are recorded last, just before the chunk
+ * commits: event ids come from a sequence, and ids taken before the rating
+ * recompute would stay invisible long enough for change-stream readers to
+ * skip them as a gap.
+ */
+@Component
+public class AccountDeletion {
+
+    private static final int MOVIES_PER_STATEMENT = 5000;
+
+    private final UserRepository userRepository;
+    private final ReviewRepository reviewRepository;
+    private final UserFavoritesRepository favoritesRepository;
+    private final UserWatchListRepository watchListRepository;
+    private final MovieRepository movieRepository;
+    private final MovieResponseCache movieCache;
+    private final UserCache userCache;
+    private final MovieLeaderboards leaderboards;
+    private final RatingRecomputeQueue ratingQueue;
+    private final ChangeOutbox outbox;
+    private final MovieRecommender recommender;
+    private final TransactionTemplate tx;
+    private final int chunkSize;
+
+    public AccountDeletion(UserRepository userRepository,
+                           ReviewRepository reviewRepository,
+                           UserFavoritesRepository favoritesRepository,
+                           UserWatchListRepository watchListRepository,
+                           MovieRepository movieRepository,
+                           MovieResponseCache movieCache,
+                           UserCache userCache,
+                           MovieLeaderboards leaderboards,
+                           RatingRecomputeQueue ratingQueue,
+                           ChangeOutbox outbox,
+                           MovieRecommender recommender,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${cineflix.users.delete-chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.reviewRepository = reviewRepository;
+        this.favoritesRepository = favoritesRepository;
+        this.watchListRepository = watchListRepository;
+        this.movieRepository = movieRepository;
+        this.movieCache = movieCache;
+        this.userCache = userCache;
+        this.leaderboards = leaderboards;
+        this.ratingQueue = ratingQueue;
+        this.outbox = outbox;
+        this.recommender = recommender;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Deletes the given accounts and returns how many existed. Chunks that
+     * completed stay deleted if a later chunk fails.
+     */
+    public int delete(Collection<Integer> userIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        int deleted = 0;
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            List<Integer> chunk = ids.subList(i, Math.min(ids.size(), i + chunkSize));
+            Integer count = tx.execute(status -> deleteChunk(chunk));
+            deleted += count != null ? count : 0;
+        }
+        return deleted;
+    }
+
+    private int deleteChunk(List<Integer> userIds) {
+        List<UserIdentity> users = userRepository.findIdentitiesByIdIn(userIds);
+        if (users.isEmpty()) {
+            return 0;
+        }
+        List<Integer> existing = users.stream().map(UserIdentity::id).toList();
+        List<Integer> movieIds = reviewRepository.findMovieIdsByUserIdIn(existing);
+
+        reviewRepository.deleteByUserIdIn(existing);
+        favoritesRepository.deleteByUserIdIn(existing);
+        watchListRepository.deleteByUserIdIn(existing);
+        int deleted = userRepository.deleteByIdIn(existing);
+
+        if (!movieIds.isEmpty()) {
+            if (ratingQueue.isEnabled()) {
+                movieIds.forEach(ratingQueue::markDirty);
+            } else {
+                // sliced only to stay well below the driver's bind parameter limit
+                for (int i = 0; i < movieIds.size(); i += MOVIES_PER_STATEMENT) {
+                    List<Integer> slice = movieIds.subList(i, Math.min(movieIds.size(), i + MOVIES_PER_STATEMENT));
+                    movieRepository.recomputeRatingAggregates(slice);
+                    for (MovieRating rating : movieRepository.findRatingsByIdIn(slice)) {
+                        movieCache.invalidate(rating.movieId(), rating.title());
+                        leaderboards.ratingChanged(rating);
+                    }
+                }
+            }
+        }
+        for (UserIdentity user : users) {
+            userCache.invalidate(user.id(), user.email(), user.username());
+            recommender.userRemoved(user.id());
+        }
+        outbox.recordAll(Subject.USER, Operation.DELETED, existing);
+        outbox.recordAll(Subject.MOVIE, Operation.UPDATED, movieIds);
+        return deleted;
+    }
+}
@@ -0,0 +1,265 @@
+package sep3.cineflix.db_service.Cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.ByteString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sep3.cineflix.db_service.Config.RecentWrites;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import sep3.cineflix.grpc.MovieResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of ready-built {@link MovieResponse}s keyed by id and by title,
+ * plus a separate cache of their serialized bytes for list responses. The byte
+ * cache is bounded by total size rather than entry count, so it can cover the
+ * whole catalogue without keeping the message objects alive.
+ * <p>
+ * Every invalidation takes a stamp from a generation counter and records it
+ * against the movie's id. A loaded movie whose id was invalidated after the
+ * load began is returned but not cached, so a writer can never be overtaken by
+ * a reader putting back the old value, while the rest of a large fill still
+ * lands. Invalidations issued inside a transaction are repeated after commit
+ * for the same reason. They are also reported to {@link RecentWrites}, so that
+ * loaders can fill recently changed movies from the primary rather than from a
+ * replica that may not have the change yet.
+ */
+@Component
+public class MovieResponseCache {
+
+    private static final String ALL = "movie:*";
+
+    private final RecentWrites recentWrites;
+    private final Cache<Integer, MovieResponse> byId;
+    private final Cache<String, MovieResponse> byTitle;
+    private final Cache<Integer, ByteString> serializedById;
+    private final AtomicLong generation = new AtomicLong();
+    // last invalidation stamp per movie id; at most one entry per movie, dropped by invalidateAll
+    private final Map<Integer, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long allInvalidatedAt;
+
+    public MovieResponseCache(RecentWrites recentWrites,
+                              @Value("${cineflix.cache.movies.max-size:10000}") long maxSize,
+                              @Value("${cineflix.cache.movies.ttl-seconds:600}") long ttlSeconds,
+                              @Value("${cineflix.cache.movies.serialized-max-bytes:67108864}") long serializedMaxBytes) {
+        this.recentWrites = recentWrites;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.byTitle = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.serializedById = Caffeine.newBuilder()
+                .maximumWeight(serializedMaxBytes)
+                .weigher((Integer id, ByteString bytes) -> bytes.size())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<MovieResponse> getById(int id, Supplier<Optional<MovieResponse>> loader) {
+        MovieResponse cached = byId.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return load(loader);
+    }
+
+    public Optional<MovieResponse> getByTitle(String title, Supplier<Optional<MovieResponse>> loader) {
+        MovieResponse cached = byTitle.getIfPresent(title);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return load(loader);
+    }
+
+    /**
+     * Resolves the ids from the cache and hands all misses to the loader in a single call.
+     * Ids that are neither cached nor returned by the loader are absent from the result.
+     */
+    public Map<Integer, MovieResponse> getAllById(Collection<Integer> ids,
+                                                  Function<List<Integer>, List<MovieResponse>> loader) {
+        Map<Integer, MovieResponse> result = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (Integer id : ids) {
+            MovieResponse cached = byId.getIfPresent(id);
+            if (cached != null) {
+                result.put(id, cached);
+            } else if (!result.containsKey(id)) {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long observed = generation.get();
+            for (MovieResponse response : loader.apply(misses)) {
+                result.put(response.getId(), response);
+                putIfCurrent(observed, response);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #getAllById} but returns each movie as its encoded {@link MovieResponse},
+     * ready to be written into a list response without rebuilding or re-encoding it.
+     */
+    public Map<Integer, ByteString> getAllSerializedById(Collection<Integer> ids,
+                                                         Function<List<Integer>, List<MovieResponse>> loader) {
+        Map<Integer, ByteString> result = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        long observed = generation.get();
+        for (Integer id : ids) {
+            ByteString cached = serializedById.getIfPresent(id);
+            if (cached == null) {
+                MovieResponse built = byId.getIfPresent(id);
+                if (built != null) {
+                    cached = built.toByteString();
+                    putSerializedIfCurrent(observed, id, cached);
+                }
+            }
+            if (cached != null) {
+                result.put(id, cached);
+            } else if (!result.containsKey(id)) {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (MovieResponse response : loader.apply(misses)) {
+                ByteString bytes = response.toByteString();
+                result.put(response.getId(), bytes);
+                putSerializedIfCurrent(observed, response.getId(), bytes);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the movie under its id and every given title (pass both the old and
+     * the new title when a movie is renamed).
+     */
+    public void invalidate(int id, String... titles) {
+        recentWrites.written(key(id));
+        evict(id, titles);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(id, titles);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        recentWrites.written(ALL);
+        allInvalidatedAt = generation.incrementAndGet();
+        // every cleared stamp is covered by allInvalidatedAt
+        invalidatedAt.clear();
+        byId.invalidateAll();
+        byTitle.invalidateAll();
+        serializedById.invalidateAll();
+    }
+
+    /**
+     * Whether the movie was invalidated within the replica lag window; such movies must be loaded from the primary.
+     */
+    public boolean recentlyChanged(int id) {
+        return recentWrites.isRecent(ALL) || recentWrites.isRecent(key(id));
+    }
+
+    public long hitCount() {
+        return byId.stats().hitCount() + byTitle.stats().hitCount();
+    }
+
+    public long missCount() {
+        return byId.stats().missCount() + byTitle.stats().missCount();
+    }
+
+    public long evictionCount() {
+        return byId.stats().evictionCount() + byTitle.stats().evictionCount();
+    }
+
+    public long size() {
+        return byId.estimatedSize();
+    }
+
+    public long serializedHitCount() {
+        return serializedById.stats().hitCount();
+    }
+
+    public long serializedMissCount() {
+        return serializedById.stats().missCount();
+    }
+
+    public long serializedBytes() {
+        return serializedById.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    private static String key(int id) {
+        return "movie:" + id;
+    }
+
+    private Optional<MovieResponse> load(Supplier<Optional<MovieResponse>> loader) {
+        long observed = generation.get();
+        Optional<MovieResponse> loaded = loader.get();
+        loaded.ifPresent(response -> putIfCurrent(observed, response));
+        return loaded;
+    }
+
+    // Checked before and again after the put: an invalidation that lands in between removes the entry itself
+    // or is seen by the second check.
+    private boolean isCurrent(long observed, int id) {
+        Long stamp = invalidatedAt.get(id);
+        return allInvalidatedAt <= observed && (stamp == null || stamp <= observed);
+    }
+
+    private void putIfCurrent(long observed, MovieResponse response) {
+        if (!isCurrent(observed, response.getId())) {
+            return;
+        }
+        byId.put(response.getId(), response);
+        byTitle.put(response.getTitle(), response);
+        if (!isCurrent(observed, response.getId())) {
+            byId.invalidate(response.getId());
+            byTitle.invalidate(response.getTitle());
+        }
+    }
+
+    private void putSerializedIfCurrent(long observed, int id, ByteString bytes) {
+        if (!isCurrent(observed, id)) {
+            return;
+        }
+        serializedById.put(id, bytes);
+        if (!isCurrent(observed, id)) {
+            serializedById.invalidate(id);
+        }
+    }
+
+    private void evict(int id, String... titles) {
+        invalidatedAt.merge(id, generation.incrementAndGet(), Math::max);
+        byId.invalidate(id);
+        serializedById.invalidate(id);
+        for (String title : titles) {
+            if (title != null) {
+                byTitle.invalidate(title);
+            }
+        }
+    }
+}
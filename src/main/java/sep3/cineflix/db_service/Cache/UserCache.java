@@ -0,0 +1,175 @@
+package sep3.cineflix.db_service.Cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import sep3.cineflix.grpc.UserResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of {@link UserResponse}s keyed by id, email and username.
+ * Misses are cached too, with a much shorter TTL, so repeated lookups of an
+ * unknown email do not reach the database. A miss is never answered from
+ * anything but the database or such an expiring entry, because users can be
+ * created by other instances or directly in the database.
+ * <p>
+ * Invalidation follows {@link MovieResponseCache}: every eviction records a
+ * stamp from a generation counter against the id, email and username it
+ * evicts, and a load is only cached if none of the keys it would be stored
+ * under was evicted after the load began. A write therefore only drops the
+ * loads of the user it changed. Evictions are repeated after commit.
+ */
+@Component
+public class UserCache {
+
+    private final Cache<Integer, Optional<UserResponse>> byId;
+    private final Cache<String, Optional<UserResponse>> byEmail;
+    private final Cache<String, Optional<UserResponse>> byUsername;
+    private final AtomicLong generation = new AtomicLong();
+    // last eviction stamp per key; at most one entry per id, email and username ever invalidated
+    private final Map<Integer, Long> idInvalidatedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> emailInvalidatedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> usernameInvalidatedAt = new ConcurrentHashMap<>();
+
+    public UserCache(@Value("${cineflix.cache.users.max-size:50000}") long maxSize,
+                     @Value("${cineflix.cache.users.ttl-seconds:300}") long ttlSeconds,
+                     @Value("${cineflix.cache.users.negative-ttl-seconds:30}") long negativeTtlSeconds) {
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        Duration negativeTtl = Duration.ofSeconds(negativeTtlSeconds);
+        this.byId = build(maxSize, ttl, negativeTtl);
+        this.byEmail = build(maxSize, ttl, negativeTtl);
+        this.byUsername = build(maxSize, ttl, negativeTtl);
+    }
+
+    public Optional<UserResponse> getById(int id, Supplier<Optional<UserResponse>> loader) {
+        return get(byId, idInvalidatedAt, id, loader);
+    }
+
+    public Optional<UserResponse> getByEmail(String email, Supplier<Optional<UserResponse>> loader) {
+        return get(byEmail, emailInvalidatedAt, email, loader);
+    }
+
+    public Optional<UserResponse> getByUsername(String username, Supplier<Optional<UserResponse>> loader) {
+        return get(byUsername, usernameInvalidatedAt, username, loader);
+    }
+
+    /**
+     * Removes the user under its id, email and username, including cached misses
+     * (pass the old and the new values when they change).
+     */
+    public void invalidate(int id, String email, String username) {
+        evict(id, email, username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(id, email, username);
+                }
+            });
+        }
+    }
+
+    public long hitCount() {
+        return byId.stats().hitCount() + byEmail.stats().hitCount() + byUsername.stats().hitCount();
+    }
+
+    public long missCount() {
+        return byId.stats().missCount() + byEmail.stats().missCount() + byUsername.stats().missCount();
+    }
+
+    public long size() {
+        return byId.estimatedSize();
+    }
+
+    private <K> Optional<UserResponse> get(Cache<K, Optional<UserResponse>> cache, Map<K, Long> invalidatedAt, K key,
+                                           Supplier<Optional<UserResponse>> loader) {
+        Optional<UserResponse> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long observed = generation.get();
+        Optional<UserResponse> loaded = loader.get();
+        if (isCurrent(observed, invalidatedAt, key, loaded)) {
+            if (loaded.isPresent()) {
+                UserResponse user = loaded.get();
+                byId.put(user.getId(), loaded);
+                byEmail.put(user.getEmail(), loaded);
+                byUsername.put(user.getUsername(), loaded);
+            } else {
+                cache.put(key, loaded);
+            }
+            // an eviction that lands in between removes the entries itself or is seen here
+            if (!isCurrent(observed, invalidatedAt, key, loaded)) {
+                cache.invalidate(key);
+                loaded.ifPresent(user -> {
+                    byId.invalidate(user.getId());
+                    byEmail.invalidate(user.getEmail());
+                    byUsername.invalidate(user.getUsername());
+                });
+            }
+        }
+        return loaded;
+    }
+
+    // Whether none of the keys the loaded value would be cached under was evicted after the load began.
+    private <K> boolean isCurrent(long observed, Map<K, Long> invalidatedAt, K key, Optional<UserResponse> loaded) {
+        if (!isCurrent(observed, invalidatedAt.get(key))) {
+            return false;
+        }
+        return loaded.map(user -> isCurrent(observed, idInvalidatedAt.get(user.getId()))
+                        && isCurrent(observed, emailInvalidatedAt.get(user.getEmail()))
+                        && isCurrent(observed, usernameInvalidatedAt.get(user.getUsername())))
+                .orElse(true);
+    }
+
+    private static boolean isCurrent(long observed, Long stamp) {
+        return stamp == null || stamp <= observed;
+    }
+
+    private void evict(int id, String email, String username) {
+        long stamp = generation.incrementAndGet();
+        idInvalidatedAt.merge(id, stamp, Math::max);
+        byId.invalidate(id);
+        if (email != null) {
+            emailInvalidatedAt.merge(email, stamp, Math::max);
+            byEmail.invalidate(email);
+        }
+        if (username != null) {
+            usernameInvalidatedAt.merge(username, stamp, Math::max);
+            byUsername.invalidate(username);
+        }
+    }
+
+    private static <K> Cache<K, Optional<UserResponse>> build(long maxSize, Duration ttl, Duration negativeTtl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<K, Optional<UserResponse>>() {
+                    @Override
+                    public long expireAfterCreate(K key, Optional<UserResponse> value, long currentTime) {
+                        return (value.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Optional<UserResponse> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Optional<UserResponse> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,221 @@
+package sep3.cineflix.db_service.Changes;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read side of the outbox. One poller checks the table head and wakes the
+ * subscribers, each of which reads at its own pace through a {@link Cursor};
+ * writers never wait for subscribers.
+ * <p>
+ * Sequence numbers are assigned at insert time but become visible at commit,
+ * so a later number can show up before an earlier one. A cursor therefore
+ * stops at a hole in the sequence and only steps over it once the first event
+ * after the hole was written more than the gap timeout ago (a rolled-back
+ * transaction leaves a permanent one). The age comes from the stored
+ * {@code created_at}, not from when a cursor first saw the hole, so replaying
+ * old history never waits at holes that are long settled. A transaction that
+ * commits later than that may be missed; keep the timeout above the longest
+ * write transaction.
+ */
+@Component
+public class ChangeFeed implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+    public record Event(long sequence, Subject subject, Operation operation, int entityId, Integer relatedId,
+                        LocalDateTime createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate purgeTx;
+    private final long pollIntervalMs;
+    private final Duration gapTimeout;
+    private final Duration retention;
+    private final int purgeBatchSize;
+    private final Set<Runnable> subscribers = ConcurrentHashMap.newKeySet();
+
+    private volatile long head;
+    private ScheduledExecutorService poller;
+
+    // The EntityManagerFactory is only injected so that Hibernate's DDL has run before the table is read.
+    public ChangeFeed(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                      EntityManagerFactory entityManagerFactory,
+                      @Value("${cineflix.changes.poll-interval-ms:500}") long pollIntervalMs,
+                      @Value("${cineflix.changes.gap-timeout-ms:10000}") long gapTimeoutMs,
+                      @Value("${cineflix.changes.retention-hours:168}") long retentionHours,
+                      @Value("${cineflix.changes.purge-batch-size:10000}") int purgeBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.purgeTx = new TransactionTemplate(transactionManager);
+        this.pollIntervalMs = pollIntervalMs;
+        this.gapTimeout = Duration.ofMillis(gapTimeoutMs);
+        this.retention = Duration.ofHours(retentionHours);
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        head = latest();
+        poller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("change-feed").daemon().factory());
+        poller.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Registers a callback run on the poller thread after every poll; it must not block for long.
+     */
+    public void subscribe(Runnable wake) {
+        subscribers.add(wake);
+    }
+
+    public void unsubscribe(Runnable wake) {
+        subscribers.remove(wake);
+    }
+
+    public long latest() {
+        Long max = jdbcTemplate.queryForObject("SELECT max(id) FROM outbox_events", Long.class);
+        return max != null ? max : 0;
+    }
+
+    /**
+     * The position to start from for events committed from now on: just below the
+     * first hole among the events written within the gap timeout, so transactions
+     * still in flight with lower sequence numbers are not skipped. Without such a
+     * hole this is {@link #latest()}.
+     */
+    public long latestSettled() {
+        Timestamp since = Timestamp.valueOf(LocalDateTime.now().minus(gapTimeout));
+        Long settled = jdbcTemplate.queryForObject("SELECT max(id) FROM outbox_events WHERE created_at < ?", Long.class, since);
+        List<Long> recent = jdbcTemplate.queryForList(
+                "SELECT id FROM outbox_events WHERE created_at >= ? ORDER BY id", Long.class, since);
+        if (recent.isEmpty()) {
+            return latest();
+        }
+        long position = settled != null ? settled : recent.get(0) - 1;
+        for (long id : recent) {
+            if (id > position + 1) {
+                break;
+            }
+            position = Math.max(position, id);
+        }
+        return position;
+    }
+
+    /**
+     * The lowest retained sequence, or 0 when the outbox is empty.
+     */
+    public long oldest() {
+        Long min = jdbcTemplate.queryForObject("SELECT min(id) FROM outbox_events", Long.class);
+        return min != null ? min : 0;
+    }
+
+    public Cursor cursor(long afterSequence) {
+        return new Cursor(afterSequence);
+    }
+
+    @Scheduled(initialDelayString = "${cineflix.changes.purge-interval-ms:3600000}",
+            fixedDelayString = "${cineflix.changes.purge-interval-ms:3600000}")
+    public void purge() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        Integer deleted;
+        do {
+            // one short transaction per batch; the pool does not auto-commit
+            deleted = purgeTx.execute(status -> jdbcTemplate.update("DELETE FROM outbox_events WHERE id IN " +
+                    "(SELECT id FROM outbox_events WHERE created_at < ? ORDER BY id LIMIT ?)", cutoff, purgeBatchSize));
+        } while (deleted != null && deleted == purgeBatchSize);
+    }
+
+    private void poll() {
+        try {
+            head = Math.max(head, latest());
+        } catch (RuntimeException e) {
+            log.warn("Change feed poll failed", e);
+            return;
+        }
+        for (Runnable subscriber : subscribers) {
+            try {
+                subscriber.run();
+            } catch (RuntimeException e) {
+                log.warn("Change feed subscriber failed", e);
+            }
+        }
+    }
+
+    private List<Event> readAfter(long sequence, int limit) {
+        return jdbcTemplate.query("SELECT id, subject, operation, entity_id, related_id, created_at FROM outbox_events " +
+                        "WHERE id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new Event(
+                        rs.getLong("id"),
+                        Subject.valueOf(rs.getString("subject")),
+                        Operation.valueOf(rs.getString("operation")),
+                        rs.getInt("entity_id"),
+                        rs.getObject("related_id", Integer.class),
+                        rs.getTimestamp("created_at").toLocalDateTime()),
+                sequence, limit);
+    }
+
+    /**
+     * A subscriber's position in the sequence. Not thread-safe; each subscriber serializes its own reads.
+     */
+    public final class Cursor {
+        private long position;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        public long position() {
+            return position;
+        }
+
+        /**
+         * The next events in sequence order, at most {@code limit}; empty when caught up
+         * or waiting for a gap to fill.
+         */
+        public List<Event> next(int limit) {
+            if (position >= head) {
+                return List.of();
+            }
+            List<Event> events = new ArrayList<>();
+            long expected = position + 1;
+            LocalDateTime settledBefore = LocalDateTime.now().minus(gapTimeout);
+            for (Event event : readAfter(position, limit)) {
+                // a hole can still fill while the event after it is younger than the gap timeout
+                if (event.sequence() != expected && !event.createdAt().isBefore(settledBefore)) {
+                    break;
+                }
+                events.add(event);
+                expected = event.sequence() + 1;
+            }
+            if (!events.isEmpty()) {
+                position = events.get(events.size() - 1).sequence();
+            }
+            return events;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package sep3.cineflix.db_service.Changes;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Appends change events to the outbox table. Must be called inside the
+ * transaction that makes the change, so an event exists if and only if the
+ * change committed.
+ */
+@Component
+public class ChangeOutbox {
+
+    private static final String INSERT = "INSERT INTO outbox_events (subject, operation, entity_id, related_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChangeOutbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Subject subject, Operation operation, int entityId, Integer relatedId) {
+        jdbcTemplate.update(INSERT, subject.name(), operation.name(), entityId, relatedId, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(Subject subject, Operation operation, Collection<Integer> entityIds) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(entityIds.size());
+        for (Integer id : entityIds) {
+            rows.add(new Object[]{subject.name(), operation.name(), id, null, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+}
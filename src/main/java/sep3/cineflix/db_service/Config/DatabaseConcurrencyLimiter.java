@@ -0,0 +1,186 @@
+package sep3.cineflix.db_service.Config;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps how many gRPC handler callbacks run at once so that virtual threads queue
+ * here, cheaply, instead of piling up on Hikari's connection wait. Calls that
+ * cannot get a permit within the timeout fail with RESOURCE_EXHAUSTED.
+ * <p>
+ * A call takes one permit when its handler runs, in {@code onHalfClose}; only
+ * client-streaming calls, whose handlers write as messages arrive, also take one
+ * per message. Server-streaming handlers fetch their later pages in
+ * {@code onReady}: each fetch holds a permit too, but never waits for one. With
+ * none free the fetch is retried after {@code streamRetryMillis} on
+ * the handler executor, so a stream that was admitted is slowed, not failed.
+ * Change-stream drains woken by the feed's poller run outside gRPC callbacks;
+ * the poller wakes subscribers one at a time, so they use one connection at most.
+ */
+public class DatabaseConcurrencyLimiter implements ServerInterceptor {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+    private final Executor retryExecutor;
+
+    public DatabaseConcurrencyLimiter(int maxConcurrentCalls, long acquireTimeoutMillis, long streamRetryMillis,
+                                      Executor executor) {
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.retryExecutor = CompletableFuture.delayedExecutor(streamRetryMillis, TimeUnit.MILLISECONDS, executor);
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int queueLength() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        ServerCall.Listener<ReqT> listener = next.startCall(call, headers);
+        boolean permitPerMessage = !call.getMethodDescriptor().getType().clientSendsOneMessage();
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            // gRPC serializes its own callbacks; this also serializes them with the delayed page fetches
+            private final ReentrantLock lock = new ReentrantLock();
+            // set once the call has been closed for want of a permit; the handler must not see it again
+            private boolean rejected;
+            private boolean closed;
+            private boolean retryPending;
+
+            @Override
+            public void onMessage(ReqT message) {
+                lock.lock();
+                try {
+                    if (rejected) {
+                        return;
+                    }
+                    if (!permitPerMessage) {
+                        // unary and server-streaming stubs only store the request; the handler runs in onHalfClose
+                        super.onMessage(message);
+                    } else if (acquire(call)) {
+                        try {
+                            super.onMessage(message);
+                        } finally {
+                            permits.release();
+                        }
+                    } else {
+                        rejected = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void onHalfClose() {
+                lock.lock();
+                try {
+                    if (rejected) {
+                        return;
+                    }
+                    if (acquire(call)) {
+                        try {
+                            super.onHalfClose();
+                        } finally {
+                            permits.release();
+                        }
+                    } else {
+                        rejected = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void onReady() {
+                lock.lock();
+                try {
+                    fetch();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                lock.lock();
+                try {
+                    closed = true;
+                    super.onCancel();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                lock.lock();
+                try {
+                    closed = true;
+                    super.onComplete();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            // Called with the lock held.
+            private void fetch() {
+                if (rejected || closed) {
+                    return;
+                }
+                if (!permits.tryAcquire()) {
+                    if (!retryPending) {
+                        retryPending = true;
+                        retryExecutor.execute(this::retry);
+                    }
+                    return;
+                }
+                try {
+                    super.onReady();
+                } finally {
+                    permits.release();
+                }
+            }
+
+            private void retry() {
+                lock.lock();
+                try {
+                    retryPending = false;
+                    if (call.isReady()) {
+                        fetch();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    private boolean acquire(ServerCall<?, ?> call) {
+        try {
+            if (permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Database concurrency limit reached"), new Metadata());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.close(Status.CANCELLED.withDescription("Interrupted while waiting for a database permit"), new Metadata());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,97 @@
+package sep3.cineflix.db_service.Config;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.grpc.server.ServerBuilderCustomizer;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport settings for the Netty gRPC server, all under {@code cineflix.grpc.server.*}.
+ * <p>
+ * HTTP/2 windows are connection settings, so the flow-control window applies
+ * to every stream; it is the initial window, and Netty's BDP-based tuning
+ * still grows it on fast links. Keepalive pings stop load balancers from
+ * reaping idle connections, and the max connection age makes clients
+ * reconnect periodically so new instances get traffic. Event loop sizes of 0
+ * keep gRPC's shared defaults.
+ */
+@Configuration
+public class GrpcServerTuningConfig implements DisposableBean {
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    @Bean
+    public ServerBuilderCustomizer<NettyServerBuilder> transportTuningCustomizer(
+            @Value("${cineflix.grpc.server.max-inbound-message-size:4MB}") DataSize maxInboundMessageSize,
+            @Value("${cineflix.grpc.server.flow-control-window:1MB}") DataSize flowControlWindow,
+            @Value("${cineflix.grpc.server.max-concurrent-calls-per-connection:0}") int maxConcurrentCallsPerConnection,
+            @Value("${cineflix.grpc.server.keepalive-time-ms:60000}") long keepAliveTimeMs,
+            @Value("${cineflix.grpc.server.keepalive-timeout-ms:20000}") long keepAliveTimeoutMs,
+            @Value("${cineflix.grpc.server.permit-keepalive-time-ms:30000}") long permitKeepAliveTimeMs,
+            @Value("${cineflix.grpc.server.permit-keepalive-without-calls:true}") boolean permitKeepAliveWithoutCalls,
+            @Value("${cineflix.grpc.server.max-connection-idle-ms:0}") long maxConnectionIdleMs,
+            @Value("${cineflix.grpc.server.max-connection-age-ms:0}") long maxConnectionAgeMs,
+            @Value("${cineflix.grpc.server.max-connection-age-grace-ms:30000}") long maxConnectionAgeGraceMs,
+            @Value("${cineflix.grpc.server.boss-threads:0}") int bossThreads,
+            @Value("${cineflix.grpc.server.worker-threads:0}") int workerThreads) {
+        if (bossThreads > 0 || workerThreads > 0) {
+            bossGroup = new NioEventLoopGroup(Math.max(1, bossThreads), new DefaultThreadFactory("grpc-boss", true));
+            workerGroup = new NioEventLoopGroup(Math.max(0, workerThreads), new DefaultThreadFactory("grpc-worker", true));
+        }
+        return builder -> {
+            builder.maxInboundMessageSize((int) maxInboundMessageSize.toBytes())
+                    .initialFlowControlWindow((int) flowControlWindow.toBytes())
+                    .keepAliveTime(keepAliveTimeMs, TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS)
+                    .permitKeepAliveTime(permitKeepAliveTimeMs, TimeUnit.MILLISECONDS)
+                    .permitKeepAliveWithoutCalls(permitKeepAliveWithoutCalls);
+            if (maxConcurrentCallsPerConnection > 0) {
+                builder.maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+            }
+            if (maxConnectionIdleMs > 0) {
+                builder.maxConnectionIdle(maxConnectionIdleMs, TimeUnit.MILLISECONDS);
+            }
+            if (maxConnectionAgeMs > 0) {
+                builder.maxConnectionAge(maxConnectionAgeMs, TimeUnit.MILLISECONDS)
+                        .maxConnectionAgeGrace(maxConnectionAgeGraceMs, TimeUnit.MILLISECONDS);
+            }
+            if (bossGroup != null) {
+                // Netty requires the boss group, worker group and channel type to be set together
+                builder.bossEventLoopGroup(bossGroup)
+                        .workerEventLoopGroup(workerGroup)
+                        .channelType(NioServerSocketChannel.class);
+            }
+        };
+    }
+
+    @Bean
+    @GlobalServerInterceptor
+    @ConditionalOnProperty(name = "cineflix.grpc.compression.enabled", havingValue = "true", matchIfMissing = true)
+    public ResponseCompressionInterceptor responseCompressionInterceptor(
+            @Value("${cineflix.grpc.compression.methods:}") List<String> methods,
+            @Value("${cineflix.grpc.compression.min-message-bytes:8192}") int minMessageBytes) {
+        return new ResponseCompressionInterceptor(new HashSet<>(methods), minMessageBytes);
+    }
+
+    @Override
+    public void destroy() {
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+    }
+}
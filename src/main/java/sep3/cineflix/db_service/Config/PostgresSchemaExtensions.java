@@ -0,0 +1,75 @@
+package sep3.cineflix.db_service.Config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Applies PostgreSQL-only schema objects that JPA cannot describe (extensions,
+ * GIN/trigram indexes, SQL functions) from {@code db/postgresql-extensions.sql}.
+ * Runs after Hibernate's schema update and is skipped on other databases, such
+ * as the H2 stand-in used by tests and benchmarks. Every statement in the
+ * script must be idempotent.
+ */
+@Component
+public class PostgresSchemaExtensions implements InitializingBean {
+
+    private static final String SCRIPT = "db/postgresql-extensions.sql";
+
+    private final DataSource dataSource;
+    private boolean postgres;
+    private boolean descriptionLargeObject;
+
+    // The EntityManagerFactory is only injected so that Hibernate's DDL has run before this bean.
+    public PostgresSchemaExtensions(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+
+    /**
+     * Whether movies.description is an oid large object, in which case plain JDBC must go through lo_* functions.
+     */
+    public boolean isDescriptionLargeObject() {
+        return descriptionLargeObject;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            postgres = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        }
+        if (!postgres) {
+            return;
+        }
+        // Hibernate maps the @Lob description to an oid large object on PostgreSQL; older schemas may have text.
+        descriptionLargeObject = "oid".equals(new JdbcTemplate(dataSource).queryForObject(
+                "SELECT udt_name FROM information_schema.columns WHERE table_name = 'movies' AND column_name = 'description'",
+                String.class));
+        String script = readScript().replace("${description_text}", descriptionLargeObject
+                ? "convert_from(lo_get(m.description), ''UTF8'')"
+                : "m.description");
+        new ResourceDatabasePopulator(new ByteArrayResource(script.getBytes(StandardCharsets.UTF_8))).execute(dataSource);
+    }
+
+    private static String readScript() {
+        try {
+            return new ClassPathResource(SCRIPT).getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
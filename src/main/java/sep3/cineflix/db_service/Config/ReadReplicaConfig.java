@@ -0,0 +1,91 @@
+package sep3.cineflix.db_service.Config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in: replaces the single Hikari pool with a primary pool plus one pool per
+ * replica URL behind a {@link ReplicaRoutingDataSource}. Every pool takes the
+ * {@code spring.datasource.hikari.*} settings; replicas override the pool size
+ * and connection timeout.
+ * <p>
+ * To try it with a single PostgreSQL instance, point the replica URL at the
+ * primary database: reads then use a second pool against the same server.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cineflix.datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry registry,
+            @Value("${cineflix.datasource.replicas.urls}") List<String> urls,
+            @Value("${cineflix.datasource.replicas.username:${spring.datasource.username}}") String username,
+            @Value("${cineflix.datasource.replicas.password:${spring.datasource.password}}") String password,
+            @Value("${cineflix.datasource.replicas.maximum-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int replicaPoolSize,
+            @Value("${cineflix.datasource.replicas.connection-timeout-ms:1000}") long connectionTimeoutMillis,
+            @Value("${cineflix.datasource.replicas.max-lag-ms:1000}") long maxLagMillis) {
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(registry);
+        HikariDataSource primary = pool(properties, environment, properties.determineUrl(), "primary");
+        primary.setMetricsTrackerFactory(metrics);
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = pool(properties, environment, urls.get(i).trim(), "replica-" + i);
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(connectionTimeoutMillis);
+            replica.setMetricsTrackerFactory(metrics);
+            replicas.add(replica);
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis);
+        Gauge.builder("cineflix.datasource.replicas.healthy", routing, ReplicaRoutingDataSource::healthyCount)
+                .register(registry);
+        Gauge.builder("cineflix.datasource.replicas.configured", routing, ReplicaRoutingDataSource::replicaCount)
+                .register(registry);
+        // read-only transactions served by the primary because no replica was usable
+        FunctionCounter.builder("cineflix.datasource.replicas.fallbacks", routing, ReplicaRoutingDataSource::fallbackCount)
+                .register(registry);
+        FunctionCounter.builder("cineflix.datasource.replicas.connections", routing, ReplicaRoutingDataSource::replicaConnectionCount)
+                .register(registry);
+        return routing;
+    }
+
+    // Connections are only fetched at the first statement, by which time the transaction's read-only flag is set.
+    @Bean
+    @Primary
+    public LazyConnectionDataSourceProxy dataSource(
+            ReplicaRoutingDataSource replicaRoutingDataSource,
+            @Value("${spring.datasource.hikari.auto-commit:true}") boolean autoCommit) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+        proxy.setDefaultAutoCommit(autoCommit);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return proxy;
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment, String url, String name) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName("cineflix-" + name);
+        return pool;
+    }
+}
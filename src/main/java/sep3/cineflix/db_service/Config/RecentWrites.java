@@ -0,0 +1,57 @@
+package sep3.cineflix.db_service.Config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Keys of the data this instance changed recently, so reads of that data can
+ * stay on the primary until the replicas have caught up. Everything else is
+ * read from a replica, which {@link ReplicaRoutingDataSource} only uses while
+ * its lag is within {@code max-lag-ms}. Lag is only measured every health
+ * check, so a key stays recent for both intervals after its write commits.
+ * <p>
+ * Keys are free-form, e.g. {@code "favorites:42"}; each service picks its own.
+ */
+@Component
+public class RecentWrites {
+
+    private final Cache<String, Boolean> keys;
+
+    public RecentWrites(@Value("${cineflix.datasource.replicas.max-lag-ms:1000}") long maxLagMillis,
+                        @Value("${cineflix.datasource.replicas.health-check-interval-ms:5000}") long healthCheckIntervalMillis,
+                        @Value("${cineflix.datasource.replicas.recent-writes-max-size:100000}") long maxSize) {
+        this.keys = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(maxLagMillis + healthCheckIntervalMillis))
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * Marks the keys as written now and, inside a transaction, again once it commits.
+     */
+    public void written(String... written) {
+        for (String key : written) {
+            keys.put(key, Boolean.TRUE);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    for (String key : written) {
+                        keys.put(key, Boolean.TRUE);
+                    }
+                }
+            });
+        }
+    }
+
+    public boolean isRecent(String key) {
+        return keys.getIfPresent(key) != null;
+    }
+}
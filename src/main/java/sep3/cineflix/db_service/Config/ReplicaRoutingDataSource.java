@@ -0,0 +1,151 @@
+package sep3.cineflix.db_service.Config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Sends read-only transactions to the replica pools, round-robin over the ones
+ * that passed the last health check, and everything else to the primary.
+ * A replica is healthy while it answers and its replay lag is within
+ * {@code maxLagMillis}; with no healthy replica, reads fall back to the primary.
+ * <p>
+ * Read-only transactions named {@link #PRIMARY_READ} stay on the primary, for
+ * reads that must see this instance's own recent writes (see {@link RecentWrites}).
+ * Must sit behind a {@code LazyConnectionDataSourceProxy}: the read-only flag
+ * is only known once the transaction has begun.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY_READ = "primary-read";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final String PRIMARY = "primary";
+    // A replica that has replayed everything it received counts as current even if the primary has been idle.
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END";
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong replicaConnections = new AtomicLong();
+
+    // indexes into replicas; replaced, never modified
+    private volatile int[] healthy;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMillis = maxLagMillis;
+        this.healthy = IntStream.range(0, replicas.size()).toArray();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || PRIMARY_READ.equals(TransactionSynchronizationManager.getCurrentTransactionName())) {
+            return PRIMARY;
+        }
+        int[] candidates = healthy;
+        if (candidates.length == 0) {
+            fallbacks.incrementAndGet();
+            return PRIMARY;
+        }
+        return candidates[Math.floorMod(next.getAndIncrement(), candidates.length)];
+    }
+
+    // A replica that fails to hand out a connection is taken out of rotation until the next health check.
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!(determineCurrentLookupKey() instanceof Integer replica)) {
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = replicas.get(replica).getConnection();
+            replicaConnections.incrementAndGet();
+            return connection;
+        } catch (SQLException e) {
+            log.warn("Replica {} unavailable, reading from the primary", replicas.get(replica).getPoolName(), e);
+            markDown(replica);
+            fallbacks.incrementAndGet();
+            return primary.getConnection();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cineflix.datasource.replicas.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        healthy = IntStream.range(0, replicas.size()).filter(this::isHealthy).toArray();
+    }
+
+    public int replicaCount() {
+        return replicas.size();
+    }
+
+    public int healthyCount() {
+        return healthy.length;
+    }
+
+    public long fallbackCount() {
+        return fallbacks.get();
+    }
+
+    public long replicaConnectionCount() {
+        return replicaConnections.get();
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+
+    private boolean isHealthy(int replica) {
+        HikariDataSource pool = replicas.get(replica);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+            try (ResultSet rs = statement.executeQuery(LAG_QUERY)) {
+                rs.next();
+                double lagMillis = rs.getDouble(1);
+                if (rs.wasNull() || lagMillis > maxLagMillis) {
+                    log.warn("Replica {} is lagging ({} ms), reading from the others", pool.getPoolName(),
+                            rs.wasNull() ? "unknown" : (long) lagMillis);
+                    return false;
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            log.warn("Replica {} failed its health check", pool.getPoolName(), e);
+            return false;
+        }
+    }
+
+    private synchronized void markDown(int replica) {
+        healthy = IntStream.of(healthy).filter(i -> i != replica).toArray();
+    }
+}
@@ -0,0 +1,44 @@
+package sep3.cineflix.db_service.Config;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.util.Set;
+
+/**
+ * Gzips the responses of the configured methods. gRPC only applies it when
+ * the client's grpc-accept-encoding lists gzip and falls back to identity
+ * otherwise, so it is negotiated per call. Messages below the size threshold
+ * are sent uncompressed, as the CPU would cost more than the bytes saved.
+ */
+public class ResponseCompressionInterceptor implements ServerInterceptor {
+
+    private final Set<String> methods;
+    private final int minMessageBytes;
+
+    public ResponseCompressionInterceptor(Set<String> methods, int minMessageBytes) {
+        this.methods = Set.copyOf(methods);
+        this.minMessageBytes = minMessageBytes;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (!methods.contains(call.getMethodDescriptor().getFullMethodName())) {
+            return next.startCall(call, headers);
+        }
+        call.setCompression("gzip");
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                boolean large = !(message instanceof MessageLite lite) || lite.getSerializedSize() >= minMessageBytes;
+                super.setMessageCompression(large);
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+}
@@ -0,0 +1,50 @@
+package sep3.cineflix.db_service.Config;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.grpc.server.ServerBuilderCustomizer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in: runs gRPC handlers on virtual threads, with a permit limiter sized to
+ * the Hikari pool in front of them.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cineflix.grpc.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadGrpcConfig {
+
+    @Bean
+    public ExecutorService grpcHandlerExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-vt-", 0).factory());
+    }
+
+    @Bean
+    public ServerBuilderCustomizer<NettyServerBuilder> virtualThreadExecutorCustomizer(ExecutorService grpcHandlerExecutor) {
+        return builder -> builder.executor(grpcHandlerExecutor);
+    }
+
+    @Bean
+    @GlobalServerInterceptor
+    public DatabaseConcurrencyLimiter databaseConcurrencyLimiter(
+            @Value("${cineflix.grpc.virtual-threads.max-concurrent-calls:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrentCalls,
+            @Value("${cineflix.grpc.virtual-threads.acquire-timeout-ms:5000}") long acquireTimeoutMillis,
+            @Value("${cineflix.grpc.virtual-threads.stream-retry-ms:20}") long streamRetryMillis,
+            ExecutorService grpcHandlerExecutor,
+            MeterRegistry registry) {
+        DatabaseConcurrencyLimiter limiter = new DatabaseConcurrencyLimiter(maxConcurrentCalls, acquireTimeoutMillis,
+                streamRetryMillis, grpcHandlerExecutor);
+        Gauge.builder("cineflix.grpc.db.permits.available", limiter, DatabaseConcurrencyLimiter::availablePermits)
+                .register(registry);
+        Gauge.builder("cineflix.grpc.db.permits.waiting", limiter, DatabaseConcurrencyLimiter::queueLength)
+                .register(registry);
+        return limiter;
+    }
+}
@@ -2,8 +2,10 @@ package sep3.cineflix.db_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DbServiceApplication {
 
     public static void main(String[] args) {
@@ -9,13 +9,18 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDate;
 import java.util.Set;
 import java.util.HashSet;
 
 @Entity
-@Table(name = "movies")
+@Table(name = "movies", uniqueConstraints = @UniqueConstraint(name = "uk_movies_title", columnNames = "title"), indexes = {
+        @Index(name = "idx_movies_rating", columnList = "rating, id"),
+        @Index(name = "idx_movies_release_date", columnList = "release_date, id"),
+        @Index(name = "idx_movies_run_time", columnList = "run_time, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,22 +30,33 @@ public class Movie {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @Column(nullable = false, length = 255, unique = true)
+    @Column(nullable = false, length = 255)
     @NotBlank(message = "Title cannot be blank")
     private String title;
 
+    // Bumped by every entity update; the rating bulk updates in MovieRepository leave it alone.
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     @ElementCollection
-    @CollectionTable(name = "movie_genres", joinColumns = @JoinColumn(name = "movie_id"))
+    @BatchSize(size = 500)
+    @CollectionTable(name = "movie_genres", joinColumns = @JoinColumn(name = "movie_id"),
+            indexes = @Index(name = "idx_movie_genres_genre", columnList = "genre, movie_id"))
     @Column(name = "genre")
     private Set<String> genres = new HashSet<>();
 
     @ElementCollection
-    @CollectionTable(name = "movie_directors", joinColumns = @JoinColumn(name = "movie_id"))
+    @BatchSize(size = 500)
+    @CollectionTable(name = "movie_directors", joinColumns = @JoinColumn(name = "movie_id"),
+            indexes = @Index(name = "idx_movie_directors_director", columnList = "director, movie_id"))
     @Column(name = "director")
     private Set<String> directors = new HashSet<>();
 
     @ElementCollection
-    @CollectionTable(name = "movie_actors", joinColumns = @JoinColumn(name = "movie_id"))
+    @BatchSize(size = 500)
+    @CollectionTable(name = "movie_actors", joinColumns = @JoinColumn(name = "movie_id"),
+            indexes = @Index(name = "idx_movie_actors_actor", columnList = "actor, movie_id"))
     @Column(name = "actor")
     private Set<String> actors = new HashSet<>();
 
@@ -52,9 +68,22 @@ public class Movie {
     @NotNull(message = "Release date must be specified")
     private LocalDate releaseDate;
 
+    // rating, ratingSum and reviewCount are maintained only through the bulk updates in MovieRepository,
+    // so a stale entity save can never overwrite concurrently applied review deltas.
+    // Never null: the QueryMovies keyset on (rating, id) cannot page past a null rating.
+    @Builder.Default
     @DecimalMin(value = "0.0", message = "Rating must be at least 0.0")
     @DecimalMax(value = "10.0", message = "Rating cannot exceed 10.0")
-    private Double rating;
+    @Column(updatable = false, columnDefinition = "double precision default 0")
+    private Double rating = 0.0;
+
+    @Builder.Default
+    @Column(name = "rating_sum", nullable = false, updatable = false, columnDefinition = "double precision default 0")
+    private Double ratingSum = 0.0;
+
+    @Builder.Default
+    @Column(name = "review_count", nullable = false, updatable = false, columnDefinition = "integer default 0")
+    private Integer reviewCount = 0;
 
     @Lob
     @Column(length = 1000)
@@ -0,0 +1,55 @@
+package sep3.cineflix.db_service.Entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One committed mutation, written by {@code ChangeOutbox} in the same transaction
+ * as the change itself. The id doubles as the sequence number subscribers
+ * resume from; events only name what changed, subscribers read current state
+ * through the regular RPCs.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_events_created_at", columnList = "created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutboxEvent {
+
+    public enum Subject {
+        MOVIE, REVIEW, FAVORITE, WATCHLIST, USER
+    }
+
+    public enum Operation {
+        CREATED, UPDATED, DELETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Subject subject;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Operation operation;
+
+    // Movie, review or user id; for favorites and watchlist entries, the movie id.
+    @Column(name = "entity_id", nullable = false)
+    private Integer entityId;
+
+    // The movie of a review or the user of a favorite/watchlist entry; null otherwise.
+    @Column(name = "related_id")
+    private Integer relatedId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
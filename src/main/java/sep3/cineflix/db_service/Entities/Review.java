@@ -7,8 +7,16 @@ import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Entity
-@Table(name = "reviews")
+@Table(name = "reviews", indexes = {
+        @Index(name = "idx_reviews_movie_id", columnList = "movie_id, id"),
+        @Index(name = "idx_reviews_movie_rating", columnList = "movie_id, rating, id"),
+        @Index(name = "idx_reviews_user_id", columnList = "user_id, id"),
+        @Index(name = "idx_reviews_user_rating", columnList = "user_id, rating, id"),
+        @Index(name = "idx_reviews_created_at", columnList = "created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,11 +26,11 @@ public class Review {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "movie_id")
     private Movie movie;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -34,4 +42,8 @@ public class Review {
     @DecimalMax(value = "10.0", message = "Rating cannot exceed 10.0")
     @NotNull(message = "Rating must be specified")
     private Double rating;
-}
\ No newline at end of file
+
+    // Nullable so the column can be added to existing tables; reviews written before it existed never count as recent.
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -9,7 +9,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_users_email", columnNames = "email"),
+        @UniqueConstraint(name = "uk_users_username", columnNames = "username")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,7 +25,7 @@ public class User {
     @NotBlank(message = "Username cannot be blank")
     private String username;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     @Email(message = "Email should be valid")
     @NotBlank(message = "Email cannot be blank")
     private String email;
@@ -36,4 +39,7 @@ public class User {
     @Column(nullable = false, length = 20)
     private UserRole userRole;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 }
\ No newline at end of file
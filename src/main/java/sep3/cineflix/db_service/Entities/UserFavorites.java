@@ -5,7 +5,9 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "user_favorites")
+@Table(name = "user_favorites",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_favorites_user_movie", columnNames = {"user_id", "movie_id"}),
+        indexes = @Index(name = "idx_user_favorites_movie_id", columnList = "movie_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -14,11 +16,11 @@ public class UserFavorites {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "movie_id")
     private Movie movie;
 
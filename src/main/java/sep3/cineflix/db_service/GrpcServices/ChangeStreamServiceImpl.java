@@ -0,0 +1,108 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.springframework.stereotype.Service;
+import sep3.cineflix.db_service.Changes.ChangeFeed;
+import sep3.cineflix.grpc.*;
+
+import java.time.ZoneId;
+import java.util.List;
+
+@Service
+public class ChangeStreamServiceImpl extends ChangeStreamServiceGrpc.ChangeStreamServiceImplBase {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 5000;
+
+    private final ChangeFeed changeFeed;
+
+    public ChangeStreamServiceImpl(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    @Override
+    public void subscribeChanges(SubscribeChangesRequest request, StreamObserver<ChangeBatch> responseObserver) {
+        long start;
+        if (request.getStartAtLatest()) {
+            start = changeFeed.latestSettled();
+        } else {
+            long oldest = changeFeed.oldest();
+            start = request.getAfterSequence();
+            if (start == 0) {
+                start = Math.max(0, oldest - 1);
+            } else if (oldest > 0 && start < oldest - 1) {
+                responseObserver.onError(Status.OUT_OF_RANGE
+                        .withDescription("Sequence " + start + " is no longer retained; the oldest is " + oldest)
+                        .asRuntimeException());
+                return;
+            }
+        }
+        int batchSize = request.getBatchSize() > 0 ? Math.min(request.getBatchSize(), MAX_BATCH_SIZE) : DEFAULT_BATCH_SIZE;
+
+        Subscription subscription = new Subscription((ServerCallStreamObserver<ChangeBatch>) responseObserver,
+                changeFeed.cursor(start), batchSize);
+        subscription.observer.setOnCancelHandler(subscription::cancel);
+        subscription.observer.setOnReadyHandler(subscription);
+        changeFeed.subscribe(subscription);
+    }
+
+    /**
+     * Woken both by the transport (ready) and by the feed's poller (new events), so
+     * unlike {@link KeysetStreamer} the drain is synchronized. Nothing is read while the
+     * client is not ready; a slow subscriber only falls behind in the outbox.
+     */
+    private final class Subscription implements Runnable {
+        private final ServerCallStreamObserver<ChangeBatch> observer;
+        private final ChangeFeed.Cursor cursor;
+        private final int batchSize;
+        private volatile boolean done;
+
+        Subscription(ServerCallStreamObserver<ChangeBatch> observer, ChangeFeed.Cursor cursor, int batchSize) {
+            this.observer = observer;
+            this.cursor = cursor;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (done) {
+                return;
+            }
+            try {
+                while (!done && observer.isReady()) {
+                    List<ChangeFeed.Event> events = cursor.next(batchSize);
+                    if (events.isEmpty()) {
+                        return;
+                    }
+                    observer.onNext(toBatch(events, cursor.position()));
+                }
+            } catch (RuntimeException e) {
+                if (!done) {
+                    cancel();
+                    observer.onError(Status.UNAVAILABLE.withDescription("Change stream failed").withCause(e).asRuntimeException());
+                }
+            }
+        }
+
+        private void cancel() {
+            done = true;
+            changeFeed.unsubscribe(this);
+        }
+    }
+
+    private static ChangeBatch toBatch(List<ChangeFeed.Event> events, long lastSequence) {
+        ChangeBatch.Builder batch = ChangeBatch.newBuilder().setLastSequence(lastSequence);
+        for (ChangeFeed.Event event : events) {
+            batch.addEvents(ChangeEvent.newBuilder()
+                    .setSequence(event.sequence())
+                    .setSubject(ChangeSubject.valueOf(event.subject().name()))
+                    .setOperation(ChangeOperation.valueOf(event.operation().name()))
+                    .setEntityId(event.entityId())
+                    .setRelatedId(event.relatedId() != null ? event.relatedId() : 0)
+                    .setOccurredAtMillis(event.createdAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+        }
+        return batch.build();
+    }
+}
@@ -0,0 +1,96 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Drives a server-streaming call from a keyset-paginated source.
+ * <p>
+ * Chunks are only fetched when the buffer is empty and the transport reports
+ * {@code isReady()}, so at most one chunk is held in memory per call no matter
+ * how large the underlying table is. gRPC serializes the ready and cancel
+ * callbacks of a call, so no extra locking is needed here.
+ */
+final class KeysetStreamer<T> implements Runnable {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final IntFunction<List<T>> fetchAfter;
+    private final ToIntFunction<T> cursorOf;
+    private final int chunkSize;
+    private final ArrayDeque<T> buffer = new ArrayDeque<>();
+
+    private int cursor;
+    private boolean exhausted;
+    private volatile boolean done;
+
+    private KeysetStreamer(ServerCallStreamObserver<T> observer, int startAfter, int chunkSize,
+                           IntFunction<List<T>> fetchAfter, ToIntFunction<T> cursorOf) {
+        this.observer = observer;
+        this.cursor = startAfter;
+        this.chunkSize = chunkSize;
+        this.fetchAfter = fetchAfter;
+        this.cursorOf = cursorOf;
+    }
+
+    /**
+     * Must be called from the service method itself, before it returns.
+     *
+     * @param fetchAfter returns at most {@code chunkSize} items with a cursor greater than the argument, in cursor order
+     * @param cursorOf   extracts the keyset cursor from an item
+     */
+    static <T> void start(StreamObserver<T> responseObserver, int startAfter, int chunkSize,
+                          IntFunction<List<T>> fetchAfter, ToIntFunction<T> cursorOf) {
+        ServerCallStreamObserver<T> observer = (ServerCallStreamObserver<T>) responseObserver;
+        KeysetStreamer<T> streamer = new KeysetStreamer<>(observer, startAfter, chunkSize, fetchAfter, cursorOf);
+        observer.setOnCancelHandler(streamer::cancel);
+        observer.setOnReadyHandler(streamer);
+    }
+
+    @Override
+    public void run() {
+        if (done) {
+            return;
+        }
+        try {
+            while (observer.isReady()) {
+                if (buffer.isEmpty()) {
+                    if (exhausted || !fill()) {
+                        done = true;
+                        observer.onCompleted();
+                        return;
+                    }
+                }
+                observer.onNext(buffer.poll());
+                if (done) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!done) {
+                done = true;
+                observer.onError(e);
+            }
+        }
+    }
+
+    private boolean fill() {
+        List<T> chunk = fetchAfter.apply(cursor);
+        if (chunk.isEmpty()) {
+            return false;
+        }
+        buffer.addAll(chunk);
+        cursor = cursorOf.applyAsInt(chunk.get(chunk.size() - 1));
+        exhausted = chunk.size() < chunkSize;
+        return true;
+    }
+
+    private void cancel() {
+        done = true;
+        buffer.clear();
+    }
+}
@@ -1,103 +1,389 @@
 package sep3.cineflix.db_service.GrpcServices;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Changes.ChangeOutbox;
+import sep3.cineflix.db_service.Config.ReplicaRoutingDataSource;
 import sep3.cineflix.db_service.Entities.Movie;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+import sep3.cineflix.db_service.Import.MovieImporter;
+import sep3.cineflix.db_service.Index.MovieFacetIndex;
+import sep3.cineflix.db_service.Index.MovieLeaderboards;
+import sep3.cineflix.db_service.Index.MovieFacetIndex.Facet;
+import sep3.cineflix.db_service.Recommendations.MovieRecommender;
+import sep3.cineflix.db_service.Repositories.MovieFilter;
 import sep3.cineflix.db_service.Repositories.MovieRepository;
+import sep3.cineflix.db_service.Search.MovieSearch;
 import sep3.cineflix.grpc.*;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.List;
 import java.util.HashSet;
+import java.util.Set;
 
 @Service
 public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
 
     private final MovieRepository movieRepository;
+    private final MovieResponseCache movieCache;
+    private final MovieSearch movieSearch;
+    private final MovieImporter movieImporter;
+    private final MovieFacetIndex facetIndex;
+    private final MovieLeaderboards leaderboards;
+    private final MovieRecommender recommender;
+    private final ChangeOutbox outbox;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate primaryReadTx;
+    private final TransactionTemplate writeTx;
+    private final int pageSize;
+    private final int maxPageSize;
+    private final int maxWriteAttempts;
 
-    public MovieServiceImpl(MovieRepository movieRepository) {
+    public MovieServiceImpl(MovieRepository movieRepository,
+                            MovieResponseCache movieCache,
+                            MovieSearch movieSearch,
+                            MovieImporter movieImporter,
+                            MovieFacetIndex facetIndex,
+                            MovieLeaderboards leaderboards,
+                            MovieRecommender recommender,
+                            ChangeOutbox outbox,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${cineflix.movies.page-size:200}") int pageSize,
+                            @Value("${cineflix.movies.max-page-size:1000}") int maxPageSize,
+                            @Value("${cineflix.writes.max-attempts:3}") int maxWriteAttempts) {
         this.movieRepository = movieRepository;
+        this.movieCache = movieCache;
+        this.movieSearch = movieSearch;
+        this.movieImporter = movieImporter;
+        this.facetIndex = facetIndex;
+        this.leaderboards = leaderboards;
+        this.recommender = recommender;
+        this.outbox = outbox;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // cached responses outlive the read, so recently changed movies are filled from the primary
+        this.primaryReadTx = new TransactionTemplate(transactionManager);
+        this.primaryReadTx.setReadOnly(true);
+        this.primaryReadTx.setName(ReplicaRoutingDataSource.PRIMARY_READ);
+        this.writeTx = new TransactionTemplate(transactionManager);
+        this.pageSize = pageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxWriteAttempts = maxWriteAttempts;
     }
 
     @Override
     public void createMovie(CreateMovieRequest request, StreamObserver<MovieResponse> responseObserver) {
-        if (movieRepository.existsByTitle(request.getTitle())) {
-            responseObserver.onError(new RuntimeException("Title already exists"));
+        MovieResponse created;
+        try {
+            created = writeTx.execute(status -> {
+                Movie movie = Movie.builder()
+                        .title(request.getTitle())
+                        .genres(new HashSet<>(request.getGenresList()))
+                        .directors(new HashSet<>(request.getDirectorsList()))
+                        .actors(new HashSet<>(request.getActorsList()))
+                        .runTime(request.getRunTime())
+                        .releaseDate(LocalDate.parse(request.getReleaseDate()))
+                        .rating(0.0) // Set default rating
+                        .description(request.getDescription())
+                        .posterUrl(request.getPosterUrl())
+                        .build();
+                Movie saved = movieRepository.save(movie);
+                movieSearch.refresh(List.of(saved.getId()));
+                facetIndex.put(saved.getId(), saved.getGenres(), saved.getDirectors(), saved.getActors());
+                movieCache.invalidate(saved.getId(), saved.getTitle());
+                outbox.record(Subject.MOVIE, Operation.CREATED, saved.getId(), null);
+                return toMovieResponse(saved);
+            });
+        } catch (DataIntegrityViolationException e) {
+            responseObserver.onError(WriteConflicts.alreadyExists(e));
             return;
         }
-        Movie movie = Movie.builder()
-                .title(request.getTitle())
-                .genres(new HashSet<>(request.getGenresList()))
-                .directors(new HashSet<>(request.getDirectorsList()))
-                .actors(new HashSet<>(request.getActorsList()))
-                .runTime(request.getRunTime())
-                .releaseDate(LocalDate.parse(request.getReleaseDate()))
-                .rating(0.0) // Set default rating
-                .description(request.getDescription())
-                .posterUrl(request.getPosterUrl())
-                .build();
-        Movie saved = movieRepository.save(movie);
-        responseObserver.onNext(toMovieResponse(saved));
+        responseObserver.onNext(created);
         responseObserver.onCompleted();
     }
 
     @Override
     public void getMovieById(GetMovieByIdRequest request, StreamObserver<MovieResponse> responseObserver) {
-        Optional<Movie> movieOpt = movieRepository.findById(request.getId());
+        int id = request.getId();
+        Optional<MovieResponse> movieOpt = movieCache.getById(id, () -> {
+            TransactionTemplate tx = movieCache.recentlyChanged(id) ? primaryReadTx : readOnlyTx;
+            Optional<MovieResponse> loaded = tx.execute(status -> movieRepository.findById(id).map(this::toMovieResponse));
+            // a movie another instance created within the lag window may not be on the replica yet
+            return loaded.isPresent() || tx == primaryReadTx
+                    ? loaded
+                    : primaryReadTx.execute(status -> movieRepository.findById(id).map(this::toMovieResponse));
+        });
         movieOpt.ifPresentOrElse(movie -> {
-            responseObserver.onNext(toMovieResponse(movie));
+            responseObserver.onNext(movie);
             responseObserver.onCompleted();
         }, () -> responseObserver.onError(new RuntimeException("Movie not found")));
     }
 
     @Override
     public void getMovieByTitle(GetMovieByTitleRequest request, StreamObserver<MovieResponse> responseObserver) {
-        Optional<Movie> movieOpt = movieRepository.findByTitle(request.getTitle());
+        Optional<MovieResponse> movieOpt = movieCache.getByTitle(request.getTitle(), () -> {
+            Optional<MovieResponse> loaded = readOnlyTx.execute(status ->
+                    movieRepository.findByTitle(request.getTitle()).map(this::toMovieResponse));
+            // the replica may still have a recently renamed movie under its old title, or not have a new one yet
+            if (loaded.isPresent() && !movieCache.recentlyChanged(loaded.get().getId())) {
+                return loaded;
+            }
+            return primaryReadTx.execute(status -> movieRepository.findByTitle(request.getTitle()).map(this::toMovieResponse));
+        });
         movieOpt.ifPresentOrElse(movie -> {
-            responseObserver.onNext(toMovieResponse(movie));
+            responseObserver.onNext(movie);
             responseObserver.onCompleted();
         }, () -> responseObserver.onError(new RuntimeException("Movie not found")));
     }
 
     @Override
     public void getAllMovies(GetAllMoviesRequest request, StreamObserver<GetAllMoviesResponse> responseObserver) {
-        var movies = movieRepository.findAll().stream().map(this::toMovieResponse).collect(Collectors.toList());
-        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder().addAllMovies(movies).build();
+        List<Integer> ids = movieRepository.findIdsAfter(0, Limit.unlimited());
+        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder()
+                .setUnknownFields(moviesField(GetAllMoviesResponse.MOVIES_FIELD_NUMBER, ids))
+                .build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
     @Override
-    public void updateMovie(UpdateMovieRequest request, StreamObserver<MovieResponse> responseObserver) {
-        Optional<Movie> movieOpt = movieRepository.findById(request.getId());
-        if (movieOpt.isPresent()) {
-            Movie movie = movieOpt.get();
-            if (!movie.getTitle().equals(request.getTitle()) && movieRepository.existsByTitle(request.getTitle())) {
-                responseObserver.onError(new RuntimeException("Title already exists"));
+    public void getMoviesPage(GetMoviesPageRequest request, StreamObserver<GetMoviesPageResponse> responseObserver) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : pageSize;
+        List<Integer> ids = movieRepository.findIdsAfter(request.getAfterId(), Limit.of(limit + 1));
+        boolean hasMore = ids.size() > limit;
+        if (hasMore) {
+            ids = ids.subList(0, limit);
+        }
+        GetMoviesPageResponse response = GetMoviesPageResponse.newBuilder()
+                .setUnknownFields(moviesField(GetMoviesPageResponse.MOVIES_FIELD_NUMBER, ids))
+                .setNextAfterId(ids.isEmpty() ? request.getAfterId() : ids.get(ids.size() - 1))
+                .setHasMore(hasMore)
+                .build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void streamAllMovies(StreamAllMoviesRequest request, StreamObserver<MovieResponse> responseObserver) {
+        KeysetStreamer.start(responseObserver, request.getAfterId(), pageSize,
+                afterId -> loadInIdOrder(movieRepository.findIdsAfter(afterId, Limit.of(pageSize))),
+                MovieResponse::getId);
+    }
+
+    @Override
+    public void getMoviesByIds(GetMoviesByIdsRequest request, StreamObserver<GetMoviesByIdsResponse> responseObserver) {
+        if (request.getIdsCount() > maxPageSize) {
+            responseObserver.onError(new RuntimeException("At most " + maxPageSize + " ids per request"));
+            return;
+        }
+        Map<Integer, MovieResponse> found = resolve(request.getIdsList());
+        GetMoviesByIdsResponse.Builder builder = GetMoviesByIdsResponse.newBuilder();
+        for (int id : request.getIdsList()) {
+            MovieLookup.Builder lookup = MovieLookup.newBuilder().setId(id);
+            MovieResponse movie = found.get(id);
+            if (movie != null) {
+                lookup.setFound(true).setMovie(movie);
+            }
+            builder.addResults(lookup);
+        }
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void searchMovies(SearchMoviesRequest request, StreamObserver<SearchMoviesResponse> responseObserver) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : 10;
+        List<Integer> ids = movieSearch.search(request.getQuery(), limit + 1, Math.max(request.getOffset(), 0));
+        boolean hasMore = ids.size() > limit;
+        if (hasMore) {
+            ids = ids.subList(0, limit);
+        }
+        SearchMoviesResponse response = SearchMoviesResponse.newBuilder()
+                .setUnknownFields(moviesField(SearchMoviesResponse.MOVIES_FIELD_NUMBER, ids))
+                .setHasMore(hasMore)
+                .build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void queryMovies(QueryMoviesRequest request, StreamObserver<QueryMoviesResponse> responseObserver) {
+        MovieFilter filter;
+        MovieFilter.SortKey sort;
+        Object afterValue = null;
+        Integer afterId = null;
+        try {
+            filter = new MovieFilter(
+                    new HashSet<>(request.getGenresList()),
+                    new HashSet<>(request.getDirectorsList()),
+                    new HashSet<>(request.getActorsList()),
+                    request.hasMinRating() ? request.getMinRating() : null,
+                    request.hasMaxRating() ? request.getMaxRating() : null,
+                    request.getReleasedFrom().isEmpty() ? null : LocalDate.parse(request.getReleasedFrom()),
+                    request.getReleasedTo().isEmpty() ? null : LocalDate.parse(request.getReleasedTo()),
+                    request.hasMinRunTime() ? request.getMinRunTime() : null,
+                    request.hasMaxRunTime() ? request.getMaxRunTime() : null);
+            sort = switch (request.getSort()) {
+                case RATING -> MovieFilter.SortKey.RATING;
+                case RELEASE_DATE -> MovieFilter.SortKey.RELEASE_DATE;
+                case RUN_TIME -> MovieFilter.SortKey.RUN_TIME;
+                case TITLE -> MovieFilter.SortKey.TITLE;
+                default -> MovieFilter.SortKey.ID;
+            };
+        } catch (DateTimeParseException e) {
+            responseObserver.onError(new RuntimeException("Invalid release date range"));
+            return;
+        }
+        // Cursors are "<id>" for ID and "<sort value>:<id>" otherwise, taken from the last movie of the previous page.
+        String cursor = request.getCursor();
+        if (!cursor.isEmpty()) {
+            try {
+                int separator = cursor.lastIndexOf(':');
+                afterId = Integer.parseInt(cursor.substring(separator + 1));
+                if (sort != MovieFilter.SortKey.ID) {
+                    afterValue = parseSortValue(sort, cursor.substring(0, separator));
+                }
+            } catch (RuntimeException e) {
+                responseObserver.onError(new RuntimeException("Invalid cursor"));
                 return;
             }
-            movie.setTitle(request.getTitle());
-            movie.setGenres(new HashSet<>(request.getGenresList()));
-            movie.setDirectors(new HashSet<>(request.getDirectorsList()));
-            movie.setActors(new HashSet<>(request.getActorsList()));
-            movie.setRunTime(request.getRunTime());
-            movie.setReleaseDate(LocalDate.parse(request.getReleaseDate()));
-            movie.setDescription(request.getDescription());
-            movie.setPosterUrl(request.getPosterUrl());
-            Movie updated = movieRepository.save(movie);
-            responseObserver.onNext(toMovieResponse(updated));
-            responseObserver.onCompleted();
-        } else {
-            responseObserver.onError(new RuntimeException("Movie not found"));
         }
+
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : pageSize;
+        // the id page comes from a replica; the movies themselves come through the response cache in moviesField
+        Object keysetValue = afterValue;
+        Integer keysetId = afterId;
+        List<MovieFilter.Row> rows = readOnlyTx.execute(status ->
+                movieRepository.findFilteredPage(filter, sort, request.getDescending(), keysetValue, keysetId, limit + 1));
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+        QueryMoviesResponse.Builder builder = QueryMoviesResponse.newBuilder()
+                .setUnknownFields(moviesField(QueryMoviesResponse.MOVIES_FIELD_NUMBER,
+                        rows.stream().map(MovieFilter.Row::id).collect(Collectors.toList())));
+        if (hasMore) {
+            MovieFilter.Row last = rows.get(rows.size() - 1);
+            builder.setNextCursor(sort == MovieFilter.SortKey.ID ? String.valueOf(last.id()) : last.sortValue() + ":" + last.id());
+        }
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
+    private static Object parseSortValue(MovieFilter.SortKey sort, String value) {
+        return switch (sort) {
+            case RATING -> Double.parseDouble(value);
+            case RELEASE_DATE -> LocalDate.parse(value);
+            case RUN_TIME -> Integer.parseInt(value);
+            default -> value;
+        };
+    }
+
+    @Override
+    public StreamObserver<CreateMovieRequest> importMovies(StreamObserver<ImportMoviesResponse> responseObserver) {
+        MovieImporter.Session session = movieImporter.start();
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(CreateMovieRequest request) {
+                session.add(request);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // chunks committed so far stay imported; the rest of the buffer is dropped
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(session.finish());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    @Override
+    public void updateMovie(UpdateMovieRequest request, StreamObserver<MovieResponse> responseObserver) {
+        Optional<MovieResponse> updatedOpt;
+        try {
+            updatedOpt = WriteConflicts.withRetry(writeTx, maxWriteAttempts, status -> {
+                Optional<Movie> movieOpt = movieRepository.findById(request.getId());
+                if (movieOpt.isEmpty()) {
+                    return Optional.<MovieResponse>empty();
+                }
+                Movie movie = movieOpt.get();
+                if (request.hasExpectedVersion() && request.getExpectedVersion() != movie.getVersion()) {
+                    throw WriteConflicts.versionMismatch(request.getExpectedVersion(), movie.getVersion());
+                }
+                String previousTitle = movie.getTitle();
+                movie.setTitle(request.getTitle());
+                movie.setGenres(new HashSet<>(request.getGenresList()));
+                movie.setDirectors(new HashSet<>(request.getDirectorsList()));
+                movie.setActors(new HashSet<>(request.getActorsList()));
+                movie.setRunTime(request.getRunTime());
+                movie.setReleaseDate(LocalDate.parse(request.getReleaseDate()));
+                movie.setDescription(request.getDescription());
+                movie.setPosterUrl(request.getPosterUrl());
+                // flush here so version conflicts and title clashes surface inside the retry loop
+                Movie updated = movieRepository.saveAndFlush(movie);
+                movieSearch.refresh(List.of(updated.getId()));
+                facetIndex.put(updated.getId(), updated.getGenres(), updated.getDirectors(), updated.getActors());
+                movieCache.invalidate(updated.getId(), previousTitle, updated.getTitle());
+                outbox.record(Subject.MOVIE, Operation.UPDATED, updated.getId(), null);
+                return Optional.of(toMovieResponse(updated));
+            });
+        } catch (DataIntegrityViolationException e) {
+            responseObserver.onError(WriteConflicts.alreadyExists(e));
+            return;
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+            return;
+        }
+        updatedOpt.ifPresentOrElse(movie -> {
+            responseObserver.onNext(movie);
+            responseObserver.onCompleted();
+        }, () -> responseObserver.onError(new RuntimeException("Movie not found")));
     }
 
     @Override
     public void deleteMovie(DeleteMovieRequest request, StreamObserver<DeleteMovieResponse> responseObserver) {
-        if (movieRepository.existsById(request.getId())) {
-            movieRepository.deleteById(request.getId());
+        boolean deleted;
+        try {
+            deleted = Boolean.TRUE.equals(writeTx.execute(status -> {
+                Optional<String> titleOpt = movieRepository.findTitleById(request.getId());
+                if (titleOpt.isEmpty()) {
+                    return false;
+                }
+                movieRepository.deleteById(request.getId());
+                facetIndex.remove(request.getId());
+                leaderboards.movieRemoved(request.getId());
+                recommender.movieRemoved(request.getId());
+                movieCache.invalidate(request.getId(), titleOpt.get());
+                outbox.record(Subject.MOVIE, Operation.DELETED, request.getId(), null);
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // still has reviews, favorites or watch list entries; the index and cache updates only run after commit
+            responseObserver.onError(WriteConflicts.stillReferenced(e, "Movie"));
+            return;
+        }
+        if (deleted) {
             DeleteMovieResponse response = DeleteMovieResponse.newBuilder().setSuccess(true).setMessage("Movie deleted").build();
             responseObserver.onNext(response);
             responseObserver.onCompleted();
@@ -108,29 +394,145 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
 
     @Override
     public void getMoviesByGenre(GetMoviesByGenreRequest request, StreamObserver<GetAllMoviesResponse> responseObserver) {
-        List<Movie> movies = movieRepository.findByGenresContaining(request.getGenre());
-        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder().addAllMovies(movies.stream().map(this::toMovieResponse).collect(Collectors.toList())).build();
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        browse(Facet.GENRE, request.getGenre(), request.getAfterId(), request.getLimit(), responseObserver);
     }
 
     @Override
     public void getMoviesByDirector(GetMoviesByDirectorRequest request, StreamObserver<GetAllMoviesResponse> responseObserver) {
-        List<Movie> movies = movieRepository.findByDirectorsContaining(request.getDirector());
-        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder().addAllMovies(movies.stream().map(this::toMovieResponse).collect(Collectors.toList())).build();
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        browse(Facet.DIRECTOR, request.getDirector(), request.getAfterId(), request.getLimit(), responseObserver);
     }
 
     @Override
     public void getMoviesByActor(GetMoviesByActorRequest request, StreamObserver<GetAllMoviesResponse> responseObserver) {
-        List<Movie> movies = movieRepository.findByActorsContaining(request.getActor());
-        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder().addAllMovies(movies.stream().map(this::toMovieResponse).collect(Collectors.toList())).build();
+        browse(Facet.ACTOR, request.getActor(), request.getAfterId(), request.getLimit(), responseObserver);
+    }
+
+    @Override
+    public void getFacetCounts(GetFacetCountsRequest request, StreamObserver<GetFacetCountsResponse> responseObserver) {
+        Facet facet = switch (request.getFacet()) {
+            case DIRECTOR -> Facet.DIRECTOR;
+            case ACTOR -> Facet.ACTOR;
+            default -> Facet.GENRE;
+        };
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : maxPageSize;
+        GetFacetCountsResponse.Builder builder = GetFacetCountsResponse.newBuilder();
+        for (MovieFacetIndex.FacetCount count : facetIndex.counts(facet, limit)) {
+            builder.addCounts(FacetCount.newBuilder().setValue(count.value()).setCount(count.count()));
+        }
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getTopRatedMovies(GetTopRatedMoviesRequest request, StreamObserver<GetAllMoviesResponse> responseObserver) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : 10;
+        responseObserver.onNext(GetAllMoviesResponse.newBuilder()
+                .setUnknownFields(moviesField(GetAllMoviesResponse.MOVIES_FIELD_NUMBER, leaderboards.topRated(limit)))
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getTrendingMovies(GetTrendingMoviesRequest request, StreamObserver<GetAllMoviesResponse> responseObserver) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : 10;
+        responseObserver.onNext(GetAllMoviesResponse.newBuilder()
+                .setUnknownFields(moviesField(GetAllMoviesResponse.MOVIES_FIELD_NUMBER, leaderboards.trending(limit)))
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getRecommendations(GetRecommendationsRequest request, StreamObserver<GetRecommendationsResponse> responseObserver) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : 10;
+        List<Integer> ids = recommender.recommend(request.getUserId(), limit);
+        boolean personalized = !ids.isEmpty();
+        if (!personalized) {
+            ids = leaderboards.topRated(limit);
+        }
+        responseObserver.onNext(GetRecommendationsResponse.newBuilder()
+                .setUnknownFields(moviesField(GetRecommendationsResponse.MOVIES_FIELD_NUMBER, ids))
+                .setPersonalized(personalized)
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private void browse(Facet facet, String value, int afterId, int limit, StreamObserver<GetAllMoviesResponse> responseObserver) {
+        int[] ids = facetIndex.ids(facet, value);
+        int position = Arrays.binarySearch(ids, afterId);
+        int from = afterId <= 0 ? 0 : position >= 0 ? position + 1 : -position - 1;
+        int to = limit > 0 ? Math.min(ids.length, from + Math.min(limit, maxPageSize)) : ids.length;
+        List<Integer> page = Arrays.stream(ids, from, to).boxed().collect(Collectors.toList());
+        GetAllMoviesResponse response = GetAllMoviesResponse.newBuilder()
+                .setUnknownFields(moviesField(GetAllMoviesResponse.MOVIES_FIELD_NUMBER, page))
+                .setTotalCount(ids.length)
+                .build();
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
-    private MovieResponse toMovieResponse(Movie movie) {
+    // The movies of a list response, in the order of the ids, from the serialized response cache.
+    private UnknownFieldSet moviesField(int fieldNumber, List<Integer> ids) {
+        Map<Integer, ByteString> found = movieCache.getAllSerializedById(ids, this::loadResponses);
+        List<ByteString> movies = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            ByteString movie = found.get(id);
+            if (movie != null) {
+                movies.add(movie);
+            }
+        }
+        return SerializedMovies.asField(fieldNumber, movies);
+    }
+
+    private Map<Integer, MovieResponse> resolve(List<Integer> ids) {
+        return movieCache.getAllById(ids, this::loadResponses);
+    }
+
+    // Cache misses are loaded from a replica, except movies changed within the lag window and any the replica
+    // did not have, which come from the primary; IN-queries of at most maxPageSize ids per transaction.
+    private List<MovieResponse> loadResponses(List<Integer> ids) {
+        List<Integer> fromPrimary = new ArrayList<>();
+        List<Integer> fromReplica = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            if (movieCache.recentlyChanged(id)) {
+                fromPrimary.add(id);
+            } else {
+                fromReplica.add(id);
+            }
+        }
+        List<MovieResponse> loaded = new ArrayList<>(ids.size());
+        if (!fromReplica.isEmpty()) {
+            loaded.addAll(load(readOnlyTx, fromReplica));
+            Set<Integer> found = loaded.stream().map(MovieResponse::getId).collect(Collectors.toSet());
+            fromReplica.stream().filter(id -> !found.contains(id)).forEach(fromPrimary::add);
+        }
+        if (!fromPrimary.isEmpty()) {
+            loaded.addAll(load(primaryReadTx, fromPrimary));
+        }
+        return loaded;
+    }
+
+    private List<MovieResponse> load(TransactionTemplate tx, List<Integer> ids) {
+        return tx.execute(status -> {
+            List<MovieResponse> loaded = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i += maxPageSize) {
+                movieRepository.findByIdIn(ids.subList(i, Math.min(ids.size(), i + maxPageSize)))
+                        .forEach(movie -> loaded.add(toMovieResponse(movie)));
+            }
+            return loaded;
+        });
+    }
+
+    private List<MovieResponse> loadInIdOrder(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return readOnlyTx.execute(status -> movieRepository.findByIdIn(ids).stream()
+                .sorted(Comparator.comparing(Movie::getId))
+                .map(this::toMovieResponse)
+                .collect(Collectors.toList()));
+    }
+
+    MovieResponse toMovieResponse(Movie movie) {
         return MovieResponse.newBuilder()
                 .setId(movie.getId())
                 .setTitle(movie.getTitle())
@@ -142,6 +544,7 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
                 .setRating(movie.getRating() != null ? movie.getRating() : 0.0)
                 .setDescription(movie.getDescription() != null ? movie.getDescription() : "")
                 .setPosterUrl(movie.getPosterUrl() != null ? movie.getPosterUrl() : "")
+                .setVersion(movie.getVersion() != null ? movie.getVersion() : 0L)
                 .build();
     }
 }
\ No newline at end of file
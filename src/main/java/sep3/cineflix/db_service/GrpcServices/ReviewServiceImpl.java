@@ -1,15 +1,29 @@
 package sep3.cineflix.db_service.GrpcServices;
 
 import io.grpc.stub.StreamObserver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Changes.ChangeOutbox;
+import sep3.cineflix.db_service.Config.RecentWrites;
+import sep3.cineflix.db_service.Config.ReplicaRoutingDataSource;
 import sep3.cineflix.db_service.Entities.*;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+import sep3.cineflix.db_service.Index.MovieLeaderboards;
+import sep3.cineflix.db_service.Jobs.RatingRecomputeQueue;
+import sep3.cineflix.db_service.Recommendations.MovieRecommender;
 import sep3.cineflix.db_service.Repositories.*;
 import sep3.cineflix.grpc.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.List;
 
 @Service
 public class ReviewServiceImpl extends ReviewServiceGrpc.ReviewServiceImplBase {
@@ -17,11 +31,37 @@ public class ReviewServiceImpl extends ReviewServiceGrpc.ReviewServiceImplBase {
     private final ReviewRepository reviewRepository;
     private final MovieRepository movieRepository;
     private final UserRepository userRepository;
+    private final MovieResponseCache movieCache;
+    private final MovieLeaderboards leaderboards;
+    private final RatingRecomputeQueue ratingQueue;
+    private final ChangeOutbox outbox;
+    private final MovieRecommender recommender;
+    private final RecentWrites recentWrites;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate primaryReadTx;
+    private final int maxPageSize;
 
-    public ReviewServiceImpl(ReviewRepository reviewRepository, MovieRepository movieRepository, UserRepository userRepository) {
+    public ReviewServiceImpl(ReviewRepository reviewRepository, MovieRepository movieRepository, UserRepository userRepository,
+                             MovieResponseCache movieCache, MovieLeaderboards leaderboards, RatingRecomputeQueue ratingQueue,
+                             ChangeOutbox outbox, MovieRecommender recommender, RecentWrites recentWrites,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${cineflix.reviews.max-page-size:500}") int maxPageSize) {
         this.reviewRepository = reviewRepository;
         this.movieRepository = movieRepository;
         this.userRepository = userRepository;
+        this.movieCache = movieCache;
+        this.leaderboards = leaderboards;
+        this.ratingQueue = ratingQueue;
+        this.outbox = outbox;
+        this.recommender = recommender;
+        this.recentWrites = recentWrites;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // for reviews this instance just wrote, so the writer sees them before the replicas do
+        this.primaryReadTx = new TransactionTemplate(transactionManager);
+        this.primaryReadTx.setReadOnly(true);
+        this.primaryReadTx.setName(ReplicaRoutingDataSource.PRIMARY_READ);
+        this.maxPageSize = maxPageSize;
     }
 
     @Override
@@ -38,30 +78,39 @@ public class ReviewServiceImpl extends ReviewServiceGrpc.ReviewServiceImplBase {
         review.setUser(userOpt.get());
         review.setText(request.getText());
         review.setRating(request.getRating());
+        review.setCreatedAt(LocalDateTime.now());
         Review saved = reviewRepository.save(review);
-        updateMovieRating(saved.getMovie());
+        written(saved);
+        applyRating(saved.getMovie(), saved.getRating(), 1);
+        leaderboards.reviewAdded(saved.getMovie().getId());
+        outbox.record(Subject.REVIEW, Operation.CREATED, saved.getId(), saved.getMovie().getId());
+        recommender.reviewed(saved.getUser().getId(), saved.getMovie().getId(), saved.getRating());
         responseObserver.onNext(toReviewResponse(saved));
         responseObserver.onCompleted();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void getReviewsByMovie(GetReviewsByMovieRequest request, StreamObserver<GetAllReviewsResponse> responseObserver) {
-        var reviews = reviewRepository.findByMovieId(request.getMovieId())
-                .stream().map(this::toReviewResponse).collect(Collectors.toList());
-        GetAllReviewsResponse response = GetAllReviewsResponse.newBuilder().addAllReviews(reviews).build();
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        try {
+            GetAllReviewsResponse response = readTx(movieReviews(request.getMovieId())).execute(status ->
+                    reviewPage(true, request.getMovieId(), request.getLimit(), request.getSort(), request.getCursor()));
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            responseObserver.onError(new RuntimeException("Invalid cursor"));
+        }
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void getReviewsByUser(GetReviewsByUserRequest request, StreamObserver<GetAllReviewsResponse> responseObserver) {
-        var reviews = reviewRepository.findByUserId(request.getUserId())
-                .stream().map(this::toReviewResponse).collect(Collectors.toList());
-        GetAllReviewsResponse response = GetAllReviewsResponse.newBuilder().addAllReviews(reviews).build();
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        try {
+            GetAllReviewsResponse response = readTx(userReviews(request.getUserId())).execute(status ->
+                    reviewPage(false, request.getUserId(), request.getLimit(), request.getSort(), request.getCursor()));
+            responseObserver.onNext(response);
+            responseObserver.onCompleted();
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            responseObserver.onError(new RuntimeException("Invalid cursor"));
+        }
     }
 
     @Override
@@ -70,10 +119,14 @@ public class ReviewServiceImpl extends ReviewServiceGrpc.ReviewServiceImplBase {
         Optional<Review> reviewOpt = reviewRepository.findById(request.getId());
         if (reviewOpt.isPresent()) {
             Review review = reviewOpt.get();
+            double previousRating = review.getRating();
             review.setText(request.getText());
             review.setRating(request.getRating());
             Review updated = reviewRepository.save(review);
-            updateMovieRating(updated.getMovie());
+            written(updated);
+            applyRating(updated.getMovie(), updated.getRating() - previousRating, 0);
+            outbox.record(Subject.REVIEW, Operation.UPDATED, updated.getId(), updated.getMovie().getId());
+            recommender.reviewed(updated.getUser().getId(), updated.getMovie().getId(), updated.getRating());
             responseObserver.onNext(toReviewResponse(updated));
             responseObserver.onCompleted();
         } else {
@@ -89,7 +142,11 @@ public class ReviewServiceImpl extends ReviewServiceGrpc.ReviewServiceImplBase {
             Review review = reviewOpt.get();
             Movie movie = review.getMovie();
             reviewRepository.deleteById(request.getId());
-            updateMovieRating(movie);
+            written(review);
+            applyRating(movie, -review.getRating(), -1);
+            leaderboards.reviewRemoved(movie.getId(), review.getCreatedAt());
+            outbox.record(Subject.REVIEW, Operation.DELETED, review.getId(), movie.getId());
+            recommender.reviewRemoved(review.getUser().getId(), movie.getId());
             DeleteReviewResponse response = DeleteReviewResponse.newBuilder().setSuccess(true).setMessage("Review deleted").build();
             responseObserver.onNext(response);
             responseObserver.onCompleted();
@@ -99,32 +156,102 @@ public class ReviewServiceImpl extends ReviewServiceGrpc.ReviewServiceImplBase {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void getReviewById(GetReviewByIdRequest request, StreamObserver<GetReviewByIdResponse> responseObserver) {
-        Optional<Review> reviewOpt = reviewRepository.findById(request.getId());
-        if (reviewOpt.isPresent()) {
-            Review review = reviewOpt.get();
-            GetReviewByIdResponse response = GetReviewByIdResponse.newBuilder()
-                    .setId(review.getId())
-                    .setMovieId(review.getMovie().getId())
-                    .setUserId(review.getUser().getId())
-                    .setText(review.getText())
-                    .setRating(review.getRating())
-                    .build();
-            responseObserver.onNext(response);
+        Optional<GetReviewByIdResponse> found = readTx(review(request.getId())).execute(status ->
+                reviewRepository.findById(request.getId()).map(review -> GetReviewByIdResponse.newBuilder()
+                        .setId(review.getId())
+                        .setMovieId(review.getMovie().getId())
+                        .setUserId(review.getUser().getId())
+                        .setText(review.getText())
+                        .setRating(review.getRating())
+                        .build()));
+        if (found.isPresent()) {
+            responseObserver.onNext(found.get());
             responseObserver.onCompleted();
         } else {
             responseObserver.onError(new RuntimeException("Review not found"));
         }
     }
 
-    @Transactional(readOnly = true)
-    public void updateMovieRating(Movie movie) {
-        List<Review> reviews = reviewRepository.findByMovieId(movie.getId());
-        double avg = reviews.isEmpty() ? 0.0 :
-                reviews.stream().mapToDouble(Review::getRating).average().orElse(0.0);
-        movie.setRating(avg);
-        movieRepository.save(movie);
+    // Reads go to a replica unless this instance changed the data within the replica lag window.
+    private TransactionTemplate readTx(String key) {
+        return recentWrites.isRecent(key) ? primaryReadTx : readOnlyTx;
+    }
+
+    private void written(Review review) {
+        recentWrites.written(review(review.getId()), movieReviews(review.getMovie().getId()),
+                userReviews(review.getUser().getId()));
+    }
+
+    static String review(int id) {
+        return "review:" + id;
+    }
+
+    static String movieReviews(int movieId) {
+        return "movie-reviews:" + movieId;
+    }
+
+    static String userReviews(int userId) {
+        return "user-reviews:" + userId;
+    }
+
+    // In async mode the movie row is left alone here and recomputed by RatingRecomputeQueue after commit.
+    private void applyRating(Movie movie, double sumDelta, int countDelta) {
+        if (ratingQueue.isEnabled()) {
+            ratingQueue.markDirty(movie.getId());
+            return;
+        }
+        movieRepository.applyRatingDelta(movie.getId(), sumDelta, countDelta);
+        movieCache.invalidate(movie.getId(), movie.getTitle());
+        movieRepository.findRatingById(movie.getId()).ifPresent(leaderboards::ratingChanged);
+    }
+
+    // Cursors are "<id>" for NEWEST and "<rating>:<id>" for HIGHEST_RATED, taken from the last row of the previous page.
+    // Without a limit every remaining review is returned, as clients that predate paging expect.
+    private GetAllReviewsResponse reviewPage(boolean byMovie, int ownerId, int requestedLimit, ReviewSort sort, String cursor) {
+        int limit = requestedLimit > 0 ? Math.min(requestedLimit, maxPageSize) : 0;
+        Limit fetch = limit > 0 ? Limit.of(limit + 1) : Limit.unlimited();
+        boolean byRating = sort == ReviewSort.HIGHEST_RATED;
+        List<ReviewRow> rows;
+        if (byRating) {
+            double rating = Double.MAX_VALUE;
+            int beforeId = Integer.MAX_VALUE;
+            if (!cursor.isEmpty()) {
+                int separator = cursor.lastIndexOf(':');
+                rating = Double.parseDouble(cursor.substring(0, separator));
+                beforeId = Integer.parseInt(cursor.substring(separator + 1));
+            }
+            rows = byMovie
+                    ? reviewRepository.findMoviePageByRating(ownerId, rating, beforeId, fetch)
+                    : reviewRepository.findUserPageByRating(ownerId, rating, beforeId, fetch);
+        } else {
+            int beforeId = cursor.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(cursor);
+            rows = byMovie
+                    ? reviewRepository.findMoviePageNewest(ownerId, beforeId, fetch)
+                    : reviewRepository.findUserPageNewest(ownerId, beforeId, fetch);
+        }
+        boolean hasMore = limit > 0 && rows.size() > limit;
+        if (hasMore) {
+            rows = rows.subList(0, limit);
+        }
+        GetAllReviewsResponse.Builder builder = GetAllReviewsResponse.newBuilder()
+                .addAllReviews(rows.stream().map(this::toReviewResponse).collect(Collectors.toList()))
+                .setTotalCount(byMovie ? reviewRepository.countByMovieId(ownerId) : reviewRepository.countByUserId(ownerId));
+        if (hasMore) {
+            ReviewRow last = rows.get(rows.size() - 1);
+            builder.setNextCursor(byRating ? last.rating() + ":" + last.id() : String.valueOf(last.id()));
+        }
+        return builder.build();
+    }
+
+    private ReviewResponse toReviewResponse(ReviewRow row) {
+        return ReviewResponse.newBuilder()
+                .setId(row.id())
+                .setMovieId(row.movieId())
+                .setUserId(row.userId())
+                .setText(row.text())
+                .setRating(row.rating())
+                .build();
     }
 
     private ReviewResponse toReviewResponse(Review review) {
@@ -0,0 +1,29 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+
+import java.util.List;
+
+/**
+ * Writes already-encoded {@code MovieResponse}s into the {@code repeated MovieResponse movies}
+ * field of a list response.
+ * <p>
+ * The bytes are attached as unknown length-delimited fields with the movies field
+ * number, which is exactly how protobuf encodes a repeated message field, so
+ * clients decode them as ordinary movies while the server never rebuilds or
+ * re-encodes them. The server-side message itself reports an empty movies list.
+ */
+final class SerializedMovies {
+
+    private SerializedMovies() {
+    }
+
+    static UnknownFieldSet asField(int fieldNumber, List<ByteString> movies) {
+        UnknownFieldSet.Field.Builder field = UnknownFieldSet.Field.newBuilder();
+        for (ByteString movie : movies) {
+            field.addLengthDelimited(movie);
+        }
+        return UnknownFieldSet.newBuilder().addField(fieldNumber, field.build()).build();
+    }
+}
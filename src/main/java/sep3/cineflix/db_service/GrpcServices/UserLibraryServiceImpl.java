@@ -2,13 +2,17 @@ package sep3.cineflix.db_service.GrpcServices;
 
 import io.grpc.stub.StreamObserver;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import sep3.cineflix.db_service.Entities.UserFavorites;
-import sep3.cineflix.db_service.Entities.UserWatchList;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Changes.ChangeOutbox;
+import sep3.cineflix.db_service.Config.RecentWrites;
+import sep3.cineflix.db_service.Config.ReplicaRoutingDataSource;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+import sep3.cineflix.db_service.Recommendations.MovieRecommender;
 import sep3.cineflix.db_service.Repositories.UserFavoritesRepository;
 import sep3.cineflix.db_service.Repositories.UserWatchListRepository;
-import sep3.cineflix.db_service.Repositories.UserRepository;
-import sep3.cineflix.db_service.Repositories.MovieRepository;
 import sep3.cineflix.grpc.userlibrary.*;
 
 import java.time.LocalDateTime;
@@ -19,57 +23,65 @@ public class UserLibraryServiceImpl extends UserLibraryServiceGrpc.UserLibrarySe
 
     private final UserFavoritesRepository favoritesRepository;
     private final UserWatchListRepository watchListRepository;
-    private final UserRepository userRepository;
-    private final MovieRepository movieRepository;
+    private final ChangeOutbox outbox;
+    private final MovieRecommender recommender;
+    private final RecentWrites recentWrites;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate primaryReadTx;
 
     public UserLibraryServiceImpl(
             UserFavoritesRepository favoritesRepository,
             UserWatchListRepository watchListRepository,
-            UserRepository userRepository,
-            MovieRepository movieRepository
+            ChangeOutbox outbox,
+            MovieRecommender recommender,
+            RecentWrites recentWrites,
+            PlatformTransactionManager transactionManager
     ) {
         this.favoritesRepository = favoritesRepository;
         this.watchListRepository = watchListRepository;
-        this.userRepository = userRepository;
-        this.movieRepository = movieRepository;
+        this.outbox = outbox;
+        this.recommender = recommender;
+        this.recentWrites = recentWrites;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // for lists this instance just changed, so the user sees their own add or remove
+        this.primaryReadTx = new TransactionTemplate(transactionManager);
+        this.primaryReadTx.setReadOnly(true);
+        this.primaryReadTx.setName(ReplicaRoutingDataSource.PRIMARY_READ);
     }
 
     @Override
     @Transactional
     public void addFavorite(AddFavoriteRequest request, StreamObserver<AddFavoriteResponse> responseObserver) {
-        var userOpt = userRepository.findById(request.getUserId());
-        var movieOpt = movieRepository.findById(request.getMovieId());
-        if (userOpt.isEmpty() || movieOpt.isEmpty()) {
-            responseObserver.onNext(AddFavoriteResponse.newBuilder().setSuccess(false).build());
-            responseObserver.onCompleted();
-            return;
+        boolean added = favoritesRepository.insertIfAbsent(request.getUserId(), request.getMovieId(), LocalDateTime.now()) > 0;
+        if (added) {
+            recentWrites.written(favorites(request.getUserId()));
+            outbox.record(Subject.FAVORITE, Operation.CREATED, request.getMovieId(), request.getUserId());
+            recommender.favoriteChanged(request.getUserId(), request.getMovieId(), true);
         }
-        if (favoritesRepository.existsByUserIdAndMovieId(request.getUserId(), request.getMovieId())) {
-            responseObserver.onNext(AddFavoriteResponse.newBuilder().setSuccess(false).build());
-            responseObserver.onCompleted();
-            return;
-        }
-        UserFavorites favorite = new UserFavorites(null, userOpt.get(), movieOpt.get(), LocalDateTime.now());
-        favoritesRepository.save(favorite);
-        responseObserver.onNext(AddFavoriteResponse.newBuilder().setSuccess(true).build());
+        responseObserver.onNext(AddFavoriteResponse.newBuilder().setSuccess(added).build());
         responseObserver.onCompleted();
     }
 
     @Override
     public void getFavorites(GetFavoritesRequest request, StreamObserver<GetFavoritesResponse> responseObserver) {
-        List<UserFavorites> favorites = favoritesRepository.findByUserId(request.getUserId());
-        GetFavoritesResponse.Builder builder = GetFavoritesResponse.newBuilder();
-        for (UserFavorites fav : favorites) {
-            builder.addMovieIds(fav.getMovie().getId());
-        }
-        responseObserver.onNext(builder.build());
+        List<Integer> movieIds = readTx(favorites(request.getUserId())).execute(status ->
+                favoritesRepository.findMovieIdsByUserId(request.getUserId()));
+        GetFavoritesResponse response = GetFavoritesResponse.newBuilder()
+                .addAllMovieIds(movieIds)
+                .build();
+        responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
     @Override
     @Transactional
     public void removeFavorite(RemoveFavoriteRequest request, StreamObserver<RemoveFavoriteResponse> responseObserver) {
-        favoritesRepository.deleteByUserIdAndMovieId(request.getUserId(), request.getMovieId());
+        if (favoritesRepository.deleteByUserIdAndMovieId(request.getUserId(), request.getMovieId()) > 0) {
+            recentWrites.written(favorites(request.getUserId()));
+            outbox.record(Subject.FAVORITE, Operation.DELETED, request.getMovieId(), request.getUserId());
+            recommender.favoriteChanged(request.getUserId(), request.getMovieId(), false);
+        }
         responseObserver.onNext(RemoveFavoriteResponse.newBuilder().setSuccess(true).build());
         responseObserver.onCompleted();
     }
@@ -77,40 +89,49 @@ public class UserLibraryServiceImpl extends UserLibraryServiceGrpc.UserLibrarySe
     @Override
     @Transactional
     public void addWatchList(AddWatchListRequest request, StreamObserver<AddWatchListResponse> responseObserver) {
-        var userOpt = userRepository.findById(request.getUserId());
-        var movieOpt = movieRepository.findById(request.getMovieId());
-        if (userOpt.isEmpty() || movieOpt.isEmpty()) {
-            responseObserver.onNext(AddWatchListResponse.newBuilder().setSuccess(false).build());
-            responseObserver.onCompleted();
-            return;
+        boolean added = watchListRepository.insertIfAbsent(request.getUserId(), request.getMovieId(), LocalDateTime.now()) > 0;
+        if (added) {
+            recentWrites.written(watchList(request.getUserId()));
+            outbox.record(Subject.WATCHLIST, Operation.CREATED, request.getMovieId(), request.getUserId());
+            recommender.watchlistChanged(request.getUserId(), request.getMovieId(), true);
         }
-        if (watchListRepository.existsByUserIdAndMovieId(request.getUserId(), request.getMovieId())) {
-            responseObserver.onNext(AddWatchListResponse.newBuilder().setSuccess(false).build());
-            responseObserver.onCompleted();
-            return;
-        }
-        UserWatchList watchList = new UserWatchList(null, userOpt.get(), movieOpt.get(), LocalDateTime.now());
-        watchListRepository.save(watchList);
-        responseObserver.onNext(AddWatchListResponse.newBuilder().setSuccess(true).build());
+        responseObserver.onNext(AddWatchListResponse.newBuilder().setSuccess(added).build());
         responseObserver.onCompleted();
     }
 
     @Override
     public void getWatchList(GetWatchListRequest request, StreamObserver<GetWatchListResponse> responseObserver) {
-        List<UserWatchList> watchList = watchListRepository.findByUserId(request.getUserId());
-        GetWatchListResponse.Builder builder = GetWatchListResponse.newBuilder();
-        for (UserWatchList wl : watchList) {
-            builder.addMovieIds(wl.getMovie().getId());
-        }
-        responseObserver.onNext(builder.build());
+        List<Integer> movieIds = readTx(watchList(request.getUserId())).execute(status ->
+                watchListRepository.findMovieIdsByUserId(request.getUserId()));
+        GetWatchListResponse response = GetWatchListResponse.newBuilder()
+                .addAllMovieIds(movieIds)
+                .build();
+        responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
     @Override
     @Transactional
     public void removeWatchList(RemoveWatchListRequest request, StreamObserver<RemoveWatchListResponse> responseObserver) {
-        watchListRepository.deleteByUserIdAndMovieId(request.getUserId(), request.getMovieId());
+        if (watchListRepository.deleteByUserIdAndMovieId(request.getUserId(), request.getMovieId()) > 0) {
+            recentWrites.written(watchList(request.getUserId()));
+            outbox.record(Subject.WATCHLIST, Operation.DELETED, request.getMovieId(), request.getUserId());
+            recommender.watchlistChanged(request.getUserId(), request.getMovieId(), false);
+        }
         responseObserver.onNext(RemoveWatchListResponse.newBuilder().setSuccess(true).build());
         responseObserver.onCompleted();
     }
-}
\ No newline at end of file
+
+    // Reads go to a replica unless this instance changed the list within the replica lag window.
+    private TransactionTemplate readTx(String key) {
+        return recentWrites.isRecent(key) ? primaryReadTx : readOnlyTx;
+    }
+
+    static String favorites(int userId) {
+        return "favorites:" + userId;
+    }
+
+    static String watchList(int userId) {
+        return "watchlist:" + userId;
+    }
+}
@@ -0,0 +1,109 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import com.google.protobuf.FieldMask;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.grpc.UserResponse;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads keyset pages of users straight from JDBC, selecting only the columns
+ * named by a {@link FieldMask} and building {@link UserResponse}s row by row
+ * without going through entities. The password hash is left out unless it is
+ * asked for explicitly.
+ */
+@Component
+class UserPageReader {
+
+    enum Field {
+        USERNAME("username", "username"),
+        EMAIL("email", "email"),
+        HASHED_PASSWORD("hashedPassword", "hashed_password"),
+        USER_ROLE("userRole", "user_role"),
+        VERSION("version", "version");
+
+        private final String path;
+        private final String column;
+
+        Field(String path, String column) {
+            this.path = path;
+            this.column = column;
+        }
+    }
+
+    private static final Set<Field> DEFAULT_FIELDS = EnumSet.complementOf(EnumSet.of(Field.HASHED_PASSWORD));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+
+    UserPageReader(DataSource dataSource, PlatformTransactionManager transactionManager,
+                   @Value("${cineflix.users.max-page-size:1000}") int maxPageSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // PostgreSQL only honours the fetch size inside a transaction, hence readOnlyTx below
+        this.jdbcTemplate.setFetchSize(Math.min(maxPageSize, 500));
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * @throws IllegalArgumentException for a path that is not a UserResponse field
+     */
+    static Set<Field> fields(FieldMask mask) {
+        if (mask.getPathsCount() == 0) {
+            return DEFAULT_FIELDS;
+        }
+        Set<Field> fields = EnumSet.noneOf(Field.class);
+        for (String path : mask.getPathsList()) {
+            if (path.equals("id")) {
+                continue;
+            }
+            Field field = null;
+            for (Field candidate : Field.values()) {
+                if (candidate.path.equals(path)) {
+                    field = candidate;
+                }
+            }
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field: " + path);
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    /**
+     * Up to {@code limit} users with an id greater than {@code afterId}, in id order.
+     */
+    List<UserResponse> page(int afterId, int limit, Set<Field> fields) {
+        StringBuilder sql = new StringBuilder("SELECT id");
+        for (Field field : fields) {
+            sql.append(", ").append(field.column);
+        }
+        sql.append(" FROM users WHERE id > ? ORDER BY id LIMIT ?");
+
+        List<UserResponse> users = new ArrayList<>(limit);
+        readOnlyTx.executeWithoutResult(status -> jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            UserResponse.Builder user = UserResponse.newBuilder().setId(rs.getInt("id"));
+            for (Field field : fields) {
+                switch (field) {
+                    case USERNAME -> user.setUsername(rs.getString(field.column));
+                    case EMAIL -> user.setEmail(rs.getString(field.column));
+                    case HASHED_PASSWORD -> user.setHashedPassword(rs.getString(field.column));
+                    case USER_ROLE -> user.setUserRole(rs.getString(field.column));
+                    case VERSION -> user.setVersion(rs.getLong(field.column));
+                }
+            }
+            users.add(user.build());
+        }, afterId, limit));
+        return users;
+    }
+}
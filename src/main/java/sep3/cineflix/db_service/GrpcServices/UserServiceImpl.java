@@ -1,57 +1,84 @@
 package sep3.cineflix.db_service.GrpcServices;
 
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Accounts.AccountDeletion;
+import sep3.cineflix.db_service.Cache.UserCache;
 import sep3.cineflix.db_service.Entities.User;
 import sep3.cineflix.db_service.Entities.UserRole;
-import sep3.cineflix.db_service.Repositories.ReviewRepository;
 import sep3.cineflix.db_service.Repositories.UserRepository;
 import sep3.cineflix.grpc.*;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 @Service
 public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
 
     private final UserRepository userRepository;
-    private final ReviewRepository reviewRepository;
+    private final AccountDeletion accountDeletion;
+    private final UserCache userCache;
+    private final UserPageReader pageReader;
+    private final TransactionTemplate writeTx;
+    private final int maxWriteAttempts;
+    private final int pageSize;
+    private final int maxPageSize;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, ReviewRepository reviewRepository) {
+    public UserServiceImpl(UserRepository userRepository, AccountDeletion accountDeletion, UserCache userCache,
+                           UserPageReader pageReader, PlatformTransactionManager transactionManager,
+                           @Value("${cineflix.writes.max-attempts:3}") int maxWriteAttempts,
+                           @Value("${cineflix.users.page-size:200}") int pageSize,
+                           @Value("${cineflix.users.max-page-size:1000}") int maxPageSize) {
         this.userRepository = userRepository;
-        this.reviewRepository = reviewRepository;
+        this.accountDeletion = accountDeletion;
+        this.userCache = userCache;
+        this.pageReader = pageReader;
+        this.writeTx = new TransactionTemplate(transactionManager);
+        this.maxWriteAttempts = maxWriteAttempts;
+        this.pageSize = pageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @Override
     public void createUser(CreateUserRequest request, StreamObserver<UserResponse> responseObserver) {
-        if (userRepository.existsByEmail(request.getEmail())) {
-            responseObserver.onError(new RuntimeException("Email already in use"));
-            return;
-        }
-        if (userRepository.existsByUsername(request.getUsername())) {
-            responseObserver.onError(new RuntimeException("Username already in use"));
-            return;
-        }
         User user = new User(
                 null,
                 request.getUsername(),
                 request.getEmail(),
                 request.getHashedPassword(),
-                UserRole.valueOf(request.getUserRole().toUpperCase())
+                UserRole.valueOf(request.getUserRole().toUpperCase()),
+                null
         );
-        User savedUser = userRepository.save(user);
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            responseObserver.onError(WriteConflicts.alreadyExists(e));
+            return;
+        }
+        userCache.invalidate(savedUser.getId(), savedUser.getEmail(), savedUser.getUsername());
         responseObserver.onNext(toUserResponse(savedUser));
         responseObserver.onCompleted();
     }
 
     @Override
     public void getUserByEmail(GetUserByEmailRequest request, StreamObserver<UserResponse> responseObserver) {
-        Optional<User> userOpt = userRepository.findByEmail(request.getEmail());
+        Optional<UserResponse> userOpt = userCache.getByEmail(request.getEmail(),
+                () -> userRepository.findByEmail(request.getEmail()).map(this::toUserResponse));
         userOpt.ifPresentOrElse(
                 user -> {
-                    responseObserver.onNext(toUserResponse(user));
+                    responseObserver.onNext(user);
                     responseObserver.onCompleted();
                 },
                 () -> responseObserver.onError(new RuntimeException("User not found"))
@@ -60,10 +87,11 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
 
     @Override
     public void getUserByUsername(GetUserByUsernameRequest request, StreamObserver<UserResponse> responseObserver) {
-        Optional<User> userOpt = userRepository.findByUsername(request.getUsername());
+        Optional<UserResponse> userOpt = userCache.getByUsername(request.getUsername(),
+                () -> userRepository.findByUsername(request.getUsername()).map(this::toUserResponse));
         userOpt.ifPresentOrElse(
                 user -> {
-                    responseObserver.onNext(toUserResponse(user));
+                    responseObserver.onNext(user);
                     responseObserver.onCompleted();
                 },
                 () -> responseObserver.onError(new RuntimeException("User not found"))
@@ -72,10 +100,11 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
 
     @Override
     public void getUserById(GetUserByIdRequest request, StreamObserver<UserResponse> responseObserver) {
-        Optional<User> userOpt = userRepository.findById(request.getId());
+        Optional<UserResponse> userOpt = userCache.getById(request.getId(),
+                () -> userRepository.findById(request.getId()).map(this::toUserResponse));
         userOpt.ifPresentOrElse(
                 user -> {
-                    responseObserver.onNext(toUserResponse(user));
+                    responseObserver.onNext(user);
                     responseObserver.onCompleted();
                 },
                 () -> responseObserver.onError(new RuntimeException("User not found"))
@@ -84,38 +113,46 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
 
     @Override
     public void updateUser(UpdateUserRequest request, StreamObserver<UserResponse> responseObserver) {
-        Optional<User> userOpt = userRepository.findById(request.getId());
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-
-            if (!user.getEmail().equals(request.getEmail()) && userRepository.existsByEmail(request.getEmail())) {
-                responseObserver.onError(new RuntimeException("Email already in use"));
-                return;
-            }
-            if (!user.getUsername().equals(request.getUsername()) && userRepository.existsByUsername(request.getUsername())) {
-                responseObserver.onError(new RuntimeException("Username already in use"));
-                return;
-            }
-
-            user.setUsername(request.getUsername());
-            user.setEmail(request.getEmail());
-            user.setHashedPassword(request.getHashedPassword());
-            user.setUserRole(UserRole.valueOf(request.getUserRole().toUpperCase()));
-            User updatedUser = userRepository.save(user);
-            responseObserver.onNext(toUserResponse(updatedUser));
-            responseObserver.onCompleted();
-        } else {
-            responseObserver.onError(new RuntimeException("User not found"));
+        Optional<User> updatedOpt;
+        try {
+            updatedOpt = WriteConflicts.withRetry(writeTx, maxWriteAttempts, status -> {
+                Optional<User> userOpt = userRepository.findById(request.getId());
+                if (userOpt.isEmpty()) {
+                    return Optional.<User>empty();
+                }
+                User user = userOpt.get();
+                if (request.hasExpectedVersion() && request.getExpectedVersion() != user.getVersion()) {
+                    throw WriteConflicts.versionMismatch(request.getExpectedVersion(), user.getVersion());
+                }
+                userCache.invalidate(user.getId(), user.getEmail(), user.getUsername());
+                userCache.invalidate(user.getId(), request.getEmail(), request.getUsername());
+                user.setUsername(request.getUsername());
+                user.setEmail(request.getEmail());
+                user.setHashedPassword(request.getHashedPassword());
+                user.setUserRole(UserRole.valueOf(request.getUserRole().toUpperCase()));
+                // flush here so version conflicts and email/username clashes surface inside the retry loop
+                return Optional.of(userRepository.saveAndFlush(user));
+            });
+        } catch (DataIntegrityViolationException e) {
+            responseObserver.onError(WriteConflicts.alreadyExists(e));
+            return;
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+            return;
         }
+        updatedOpt.ifPresentOrElse(
+                user -> {
+                    responseObserver.onNext(toUserResponse(user));
+                    responseObserver.onCompleted();
+                },
+                () -> responseObserver.onError(new RuntimeException("User not found"))
+        );
     }
 
 
     @Override
-    @Transactional
     public void deleteUser(DeleteUserRequest request, StreamObserver<DeleteUserResponse> responseObserver) {
-        if (userRepository.existsById(request.getId())) {
-            reviewRepository.deleteByUserId(request.getId()); // Delete reviews first
-            userRepository.deleteById(request.getId());
+        if (accountDeletion.delete(List.of(request.getId())) > 0) {
             DeleteUserResponse response = DeleteUserResponse.newBuilder()
                     .setSuccess(true)
                     .setMessage("User deleted")
@@ -127,6 +164,13 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
         }
     }
 
+    @Override
+    public void deleteUsers(DeleteUsersRequest request, StreamObserver<DeleteUsersResponse> responseObserver) {
+        int deleted = accountDeletion.delete(request.getIdsList());
+        responseObserver.onNext(DeleteUsersResponse.newBuilder().setDeleted(deleted).build());
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void getAllUsers(GetAllUsersRequest request, StreamObserver<GetAllUsersResponse> responseObserver) {
         var userResponses = userRepository.findAll().stream()
@@ -140,6 +184,65 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
     }
 
 
+    @Override
+    public void getUsersPage(GetUsersPageRequest request, StreamObserver<GetUsersPageResponse> responseObserver) {
+        Set<UserPageReader.Field> fields;
+        try {
+            fields = UserPageReader.fields(request.getFields());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), maxPageSize) : pageSize;
+        List<UserResponse> users = pageReader.page(request.getAfterId(), limit + 1, fields);
+        boolean hasMore = users.size() > limit;
+        if (hasMore) {
+            users = users.subList(0, limit);
+        }
+        GetUsersPageResponse response = GetUsersPageResponse.newBuilder()
+                .addAllUsers(users)
+                .setNextAfterId(users.isEmpty() ? request.getAfterId() : users.get(users.size() - 1).getId())
+                .setHasMore(hasMore)
+                .build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void streamAllUsers(StreamAllUsersRequest request, StreamObserver<UserResponse> responseObserver) {
+        Set<UserPageReader.Field> fields;
+        try {
+            fields = UserPageReader.fields(request.getFields());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        }
+        KeysetStreamer.start(responseObserver, request.getAfterId(), pageSize,
+                afterId -> pageReader.page(afterId, pageSize, fields),
+                UserResponse::getId);
+    }
+
+    @Override
+    public void getUsersByIds(GetUsersByIdsRequest request, StreamObserver<GetUsersByIdsResponse> responseObserver) {
+        if (request.getIdsCount() > maxPageSize) {
+            responseObserver.onError(new RuntimeException("At most " + maxPageSize + " ids per request"));
+            return;
+        }
+        Map<Integer, User> found = userRepository.findByIdIn(request.getIdsList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        GetUsersByIdsResponse.Builder builder = GetUsersByIdsResponse.newBuilder();
+        for (int id : request.getIdsList()) {
+            UserLookup.Builder lookup = UserLookup.newBuilder().setId(id);
+            User user = found.get(id);
+            if (user != null) {
+                lookup.setFound(true).setUser(toUserResponse(user));
+            }
+            builder.addResults(lookup);
+        }
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
     private UserResponse toUserResponse(User user) {
         return UserResponse.newBuilder()
                 .setId(user.getId())
@@ -147,6 +250,7 @@ public class UserServiceImpl extends UserServiceGrpc.UserServiceImplBase {
                 .setEmail(user.getEmail())
                 .setHashedPassword(user.getHashedPassword())
                 .setUserRole(user.getUserRole().name())
+                .setVersion(user.getVersion() != null ? user.getVersion() : 0L)
                 .build();
     }
 }
\ No newline at end of file
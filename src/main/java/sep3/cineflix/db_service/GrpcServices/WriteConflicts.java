@@ -0,0 +1,90 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+/**
+ * Turns the database's answers to concurrent writes into gRPC statuses: unique
+ * constraint violations become ALREADY_EXISTS, deletes blocked by a foreign
+ * key become FAILED_PRECONDITION and version conflicts that survive the
+ * retries become ABORTED. Uniqueness is enforced only by the
+ * constraints, so there are no pre-check queries to race against.
+ */
+final class WriteConflicts {
+
+    // Constraint names as declared on the entities.
+    private static final Map<String, String> UNIQUE_MESSAGES = Map.of(
+            "uk_movies_title", "Title already exists",
+            "uk_users_email", "Email already in use",
+            "uk_users_username", "Username already in use");
+
+    private WriteConflicts() {
+    }
+
+    /**
+     * Runs the callback in its own transaction, starting over on an optimistic
+     * locking failure at most {@code maxAttempts} times in total.
+     */
+    static <T> T withRetry(TransactionTemplate tx, int maxAttempts, TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tx.execute(action);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw Status.ABORTED.withDescription("Concurrent update, please retry").withCause(e).asRuntimeException();
+                }
+            }
+        }
+    }
+
+    static StatusRuntimeException versionMismatch(long expected, long actual) {
+        return Status.ABORTED
+                .withDescription("Version mismatch: expected " + expected + " but found " + actual)
+                .asRuntimeException();
+    }
+
+    /**
+     * ALREADY_EXISTS for unique constraint violations; any other integrity violation is rethrown.
+     */
+    static StatusRuntimeException alreadyExists(DataIntegrityViolationException e) {
+        ConstraintViolationException violation = findCause(e);
+        if (violation == null || violation.getKind() != ConstraintViolationException.ConstraintKind.UNIQUE) {
+            throw e;
+        }
+        String constraint = violation.getConstraintName() != null ? violation.getConstraintName().toLowerCase() : "";
+        String message = UNIQUE_MESSAGES.entrySet().stream()
+                .filter(entry -> constraint.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse("Already exists");
+        return Status.ALREADY_EXISTS.withDescription(message).asRuntimeException();
+    }
+
+    /**
+     * FAILED_PRECONDITION for foreign key violations, e.g. deleting a row other rows
+     * still reference; any other integrity violation is rethrown.
+     */
+    static StatusRuntimeException stillReferenced(DataIntegrityViolationException e, String entity) {
+        ConstraintViolationException violation = findCause(e);
+        if (violation == null || violation.getKind() != ConstraintViolationException.ConstraintKind.FOREIGN_KEY) {
+            throw e;
+        }
+        return Status.FAILED_PRECONDITION.withDescription(entity + " is still referenced").asRuntimeException();
+    }
+
+    private static ConstraintViolationException findCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation;
+            }
+        }
+        return null;
+    }
+}
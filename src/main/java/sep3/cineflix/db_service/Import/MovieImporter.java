@@ -0,0 +1,249 @@
+package sep3.cineflix.db_service.Import;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Changes.ChangeOutbox;
+import sep3.cineflix.db_service.Config.PostgresSchemaExtensions;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Operation;
+import sep3.cineflix.db_service.Entities.OutboxEvent.Subject;
+import sep3.cineflix.db_service.Index.MovieFacetIndex;
+import sep3.cineflix.db_service.Search.MovieSearch;
+import sep3.cineflix.grpc.CreateMovieRequest;
+import sep3.cineflix.grpc.ImportError;
+import sep3.cineflix.grpc.ImportMoviesResponse;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk movie import for the ImportMovies RPC. Movies are buffered into chunks;
+ * each chunk is deduplicated against the database with one query and written
+ * with JDBC batches (movies, then the three collection tables) in its own
+ * transaction, so a failing chunk never rolls back earlier ones. A chunk that
+ * violates a constraint is retried in halves until the offending rows are
+ * isolated, so one bad row only fails itself. Rows are counted as imported or
+ * skipped only once the transaction that decided it has committed.
+ */
+@Component
+public class MovieImporter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PostgresSchemaExtensions schemaExtensions;
+    private final MovieSearch movieSearch;
+    private final MovieFacetIndex facetIndex;
+    private final ChangeOutbox outbox;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public MovieImporter(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         PostgresSchemaExtensions schemaExtensions,
+                         MovieSearch movieSearch,
+                         MovieFacetIndex facetIndex,
+                         ChangeOutbox outbox,
+                         @Value("${cineflix.import.chunk-size:1000}") int chunkSize,
+                         @Value("${cineflix.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.schemaExtensions = schemaExtensions;
+        this.movieSearch = movieSearch;
+        this.facetIndex = facetIndex;
+        this.outbox = outbox;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public Session start() {
+        return new Session();
+    }
+
+    private record Pending(int index, CreateMovieRequest request, LocalDate releaseDate) {
+    }
+
+    private record Written(List<Pending> inserted, List<Pending> existing) {
+    }
+
+    /**
+     * One import call. Not thread-safe; gRPC delivers the messages of a call sequentially.
+     */
+    public class Session {
+
+        private final long startedAt = System.nanoTime();
+        private final Set<String> seenTitles = new HashSet<>();
+        private final List<Pending> pending = new ArrayList<>();
+        private final ImportMoviesResponse.Builder result = ImportMoviesResponse.newBuilder();
+        private int received;
+
+        public void add(CreateMovieRequest request) {
+            int index = received++;
+            if (request.getTitle().isBlank()) {
+                fail(index, request.getTitle(), "Title cannot be blank");
+                return;
+            }
+            LocalDate releaseDate;
+            try {
+                releaseDate = LocalDate.parse(request.getReleaseDate());
+            } catch (DateTimeParseException e) {
+                fail(index, request.getTitle(), "Invalid release date: " + request.getReleaseDate());
+                return;
+            }
+            if (!seenTitles.add(request.getTitle())) {
+                skip(index, request.getTitle(), "Duplicate title in import");
+                return;
+            }
+            pending.add(new Pending(index, request, releaseDate));
+            if (pending.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        public ImportMoviesResponse finish() {
+            flush();
+            double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+            return result
+                    .setReceived(received)
+                    .setElapsedMillis(Math.round(seconds * 1000))
+                    .setMoviesPerSecond(seconds > 0 ? result.getImported() / seconds : 0)
+                    .build();
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<Pending> chunk = new ArrayList<>(pending);
+            pending.clear();
+            write(chunk);
+        }
+
+        private void write(List<Pending> chunk) {
+            Written written;
+            try {
+                written = transactionTemplate.execute(status -> writeChunk(chunk));
+            } catch (DataIntegrityViolationException e) {
+                // some row breaks a constraint (or its title was taken since the check): narrow it down
+                if (chunk.size() == 1) {
+                    Pending p = chunk.get(0);
+                    fail(p.index(), p.request().getTitle(), "Insert failed: " + e.getMostSpecificCause().getMessage());
+                } else {
+                    int half = chunk.size() / 2;
+                    write(chunk.subList(0, half));
+                    write(chunk.subList(half, chunk.size()));
+                }
+                return;
+            } catch (RuntimeException e) {
+                for (Pending p : chunk) {
+                    fail(p.index(), p.request().getTitle(), "Chunk rolled back: " + e.getMessage());
+                }
+                return;
+            }
+            result.setImported(result.getImported() + written.inserted().size());
+            for (Pending p : written.existing()) {
+                skip(p.index(), p.request().getTitle(), "Title already exists");
+            }
+        }
+
+        private Written writeChunk(List<Pending> chunk) {
+            Set<String> existing = new HashSet<>(namedJdbcTemplate.queryForList(
+                    "SELECT title FROM movies WHERE title IN (:titles)",
+                    Map.of("titles", chunk.stream().map(p -> p.request().getTitle()).toList()),
+                    String.class));
+            List<Pending> toInsert = new ArrayList<>(chunk.size());
+            List<Pending> alreadyThere = new ArrayList<>();
+            for (Pending p : chunk) {
+                if (existing.contains(p.request().getTitle())) {
+                    alreadyThere.add(p);
+                } else {
+                    toInsert.add(p);
+                }
+            }
+            if (toInsert.isEmpty()) {
+                return new Written(toInsert, alreadyThere);
+            }
+            List<Integer> ids = insertMovies(toInsert);
+            List<Object[]> genres = new ArrayList<>();
+            List<Object[]> directors = new ArrayList<>();
+            List<Object[]> actors = new ArrayList<>();
+            for (int i = 0; i < toInsert.size(); i++) {
+                CreateMovieRequest request = toInsert.get(i).request();
+                Integer id = ids.get(i);
+                new HashSet<>(request.getGenresList()).forEach(g -> genres.add(new Object[]{id, g}));
+                new HashSet<>(request.getDirectorsList()).forEach(d -> directors.add(new Object[]{id, d}));
+                new HashSet<>(request.getActorsList()).forEach(a -> actors.add(new Object[]{id, a}));
+                facetIndex.put(id, request.getGenresList(), request.getDirectorsList(), request.getActorsList());
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO movie_genres (movie_id, genre) VALUES (?, ?)", genres);
+            jdbcTemplate.batchUpdate("INSERT INTO movie_directors (movie_id, director) VALUES (?, ?)", directors);
+            jdbcTemplate.batchUpdate("INSERT INTO movie_actors (movie_id, actor) VALUES (?, ?)", actors);
+            movieSearch.refresh(ids);
+            outbox.recordAll(Subject.MOVIE, Operation.CREATED, ids);
+            return new Written(toInsert, alreadyThere);
+        }
+
+        // Batched insert that reads the identity keys back in batch order.
+        private List<Integer> insertMovies(List<Pending> rows) {
+            String description = schemaExtensions.isDescriptionLargeObject() ? "lo_from_bytea(0, convert_to(?, 'UTF8'))" : "?";
+            String sql = "INSERT INTO movies (title, run_time, release_date, rating, rating_sum, review_count, description, poster_url) " +
+                    "VALUES (?, ?, ?, 0, 0, 0, " + description + ", ?)";
+            return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id"})) {
+                    for (Pending p : rows) {
+                        CreateMovieRequest request = p.request();
+                        statement.setString(1, request.getTitle());
+                        statement.setInt(2, request.getRunTime());
+                        statement.setDate(3, Date.valueOf(p.releaseDate()));
+                        if (request.getDescription().isEmpty()) {
+                            statement.setNull(4, Types.VARCHAR);
+                        } else {
+                            statement.setString(4, request.getDescription());
+                        }
+                        statement.setString(5, request.getPosterUrl());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    List<Integer> ids = new ArrayList<>(rows.size());
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            ids.add(keys.getInt(1));
+                        }
+                    }
+                    return ids;
+                }
+            });
+        }
+
+        private void skip(int index, String title, String message) {
+            result.setSkipped(result.getSkipped() + 1);
+            report(index, title, message);
+        }
+
+        private void fail(int index, String title, String message) {
+            result.setFailed(result.getFailed() + 1);
+            report(index, title, message);
+        }
+
+        private void report(int index, String title, String message) {
+            if (result.getErrorsCount() < maxReportedErrors) {
+                result.addErrors(ImportError.newBuilder().setIndex(index).setTitle(title).setMessage(message));
+            }
+        }
+    }
+}
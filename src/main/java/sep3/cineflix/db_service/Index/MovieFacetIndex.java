@@ -0,0 +1,218 @@
+package sep3.cineflix.db_service.Index;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory inverted index from genre/director/actor values to the sorted ids of
+ * the movies carrying them. Built from the collection tables at startup and kept
+ * current by the movie write paths; rebuilt on a schedule to pick up writes made
+ * by other instances or directly in the database.
+ * <p>
+ * Posting arrays are never modified in place: writers (serialized on this
+ * object) swap in a new array, so readers need no locking and may hold on to
+ * a returned array. Writers also keep the values indexed per movie, so that
+ * updating or removing a movie only touches that movie's own posting lists.
+ */
+@Component
+public class MovieFacetIndex implements InitializingBean {
+
+    public enum Facet {
+        GENRE("movie_genres", "genre"),
+        DIRECTOR("movie_directors", "director"),
+        ACTOR("movie_actors", "actor");
+
+        private final String table;
+        private final String column;
+
+        Facet(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    public record FacetCount(String value, int count) {
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Map<Facet, ConcurrentHashMap<String, int[]>> postings = new EnumMap<>(Facet.class);
+    // movie id -> the values it is indexed under; only used by writers, under this object's lock
+    private Map<Integer, Map<Facet, List<String>>> valuesByMovie = new HashMap<>();
+
+    // The EntityManagerFactory is only injected so that Hibernate's DDL has run before the index is loaded.
+    public MovieFacetIndex(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${cineflix.facets.rebuild-interval-ms:600000}",
+            fixedDelayString = "${cineflix.facets.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        Map<Facet, ConcurrentHashMap<String, int[]>> rebuilt = new EnumMap<>(Facet.class);
+        Map<Integer, Map<Facet, List<String>>> rebuiltValues = new HashMap<>();
+        for (Facet facet : Facet.values()) {
+            Map<String, IntList> loaded = new HashMap<>();
+            jdbcTemplate.query("SELECT " + facet.column + ", movie_id FROM " + facet.table, (RowCallbackHandler) rs -> {
+                String value = rs.getString(1);
+                int movieId = rs.getInt(2);
+                loaded.computeIfAbsent(value, key -> new IntList()).add(movieId);
+                valuesOf(rebuiltValues, movieId, facet).add(value);
+            });
+            ConcurrentHashMap<String, int[]> index = new ConcurrentHashMap<>(loaded.size() * 2);
+            loaded.forEach((value, ids) -> index.put(value, ids.toSortedArray()));
+            rebuilt.put(facet, index);
+        }
+        postings = rebuilt;
+        valuesByMovie = rebuiltValues;
+    }
+
+    /**
+     * Ids of the movies with the given value, ascending. The array must not be modified.
+     */
+    public int[] ids(Facet facet, String value) {
+        return postings.get(facet).getOrDefault(value, EMPTY);
+    }
+
+    /**
+     * Visits every value of the facet with its movie ids. The arrays must not be modified.
+     */
+    public void forEachValue(Facet facet, BiConsumer<String, int[]> action) {
+        postings.get(facet).forEach(action);
+    }
+
+    public List<FacetCount> counts(Facet facet, int limit) {
+        return postings.get(facet).entrySet().stream()
+                .map(e -> new FacetCount(e.getKey(), e.getValue().length))
+                .sorted(Comparator.comparingInt(FacetCount::count).reversed().thenComparing(FacetCount::value))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Records a created or updated movie once the surrounding transaction (if any) commits.
+     */
+    public void put(int movieId, Collection<String> genres, Collection<String> directors, Collection<String> actors) {
+        List<String> genreValues = List.copyOf(genres);
+        List<String> directorValues = List.copyOf(directors);
+        List<String> actorValues = List.copyOf(actors);
+        afterCommit(() -> {
+            synchronized (this) {
+                removeNow(movieId);
+                addNow(Facet.GENRE, movieId, genreValues);
+                addNow(Facet.DIRECTOR, movieId, directorValues);
+                addNow(Facet.ACTOR, movieId, actorValues);
+            }
+        });
+    }
+
+    public void remove(int movieId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                removeNow(movieId);
+            }
+        });
+    }
+
+    private void addNow(Facet facet, int movieId, Collection<String> values) {
+        ConcurrentHashMap<String, int[]> index = postings.get(facet);
+        if (!values.isEmpty()) {
+            valuesOf(valuesByMovie, movieId, facet).addAll(values);
+        }
+        for (String value : values) {
+            int[] current = index.getOrDefault(value, EMPTY);
+            int position = Arrays.binarySearch(current, movieId);
+            if (position < 0) {
+                int insertAt = -position - 1;
+                int[] next = new int[current.length + 1];
+                System.arraycopy(current, 0, next, 0, insertAt);
+                next[insertAt] = movieId;
+                System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+                index.put(value, next);
+            }
+        }
+    }
+
+    private void removeNow(int movieId) {
+        Map<Facet, List<String>> indexed = valuesByMovie.remove(movieId);
+        if (indexed == null) {
+            return;
+        }
+        indexed.forEach((facet, values) -> {
+            ConcurrentHashMap<String, int[]> index = postings.get(facet);
+            for (String value : values) {
+                int[] current = index.getOrDefault(value, EMPTY);
+                int position = Arrays.binarySearch(current, movieId);
+                if (position < 0) {
+                    continue;
+                }
+                if (current.length == 1) {
+                    index.remove(value);
+                } else {
+                    int[] next = new int[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, position);
+                    System.arraycopy(current, position + 1, next, position, current.length - position - 1);
+                    index.put(value, next);
+                }
+            }
+        });
+    }
+
+    private static List<String> valuesOf(Map<Integer, Map<Facet, List<String>>> valuesByMovie, int movieId, Facet facet) {
+        return valuesByMovie.computeIfAbsent(movieId, id -> new EnumMap<>(Facet.class))
+                .computeIfAbsent(facet, f -> new ArrayList<>(2));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package sep3.cineflix.db_service.Index;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import sep3.cineflix.db_service.Repositories.MovieRating;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+import sep3.cineflix.db_service.Repositories.MovieReviewCount;
+import sep3.cineflix.db_service.Repositories.ReviewRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * "Top rated" and "most reviewed recently" rankings kept in sorted skip lists, so
+ * reading the first N movies costs O(N) regardless of catalogue size.
+ * <p>
+ * Review writes update both boards after their transaction commits. Reviews
+ * only ever enter the trending window incrementally, so the boards are rebuilt
+ * from the database on a schedule to age old reviews out (and to repair any
+ * update that raced a rebuild).
+ */
+@Component
+public class MovieLeaderboards implements InitializingBean {
+
+    private final MovieRepository movieRepository;
+    private final ReviewRepository reviewRepository;
+    private final int minReviews;
+    private final Duration trendingWindow;
+
+    private volatile Board topRated = new Board();
+    private volatile Board trending = new Board();
+
+    public MovieLeaderboards(MovieRepository movieRepository, ReviewRepository reviewRepository,
+                             @Value("${cineflix.leaderboards.top-rated.min-reviews:1}") int minReviews,
+                             @Value("${cineflix.leaderboards.trending.window-hours:168}") long trendingWindowHours) {
+        this.movieRepository = movieRepository;
+        this.reviewRepository = reviewRepository;
+        this.minReviews = minReviews;
+        this.trendingWindow = Duration.ofHours(trendingWindowHours);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${cineflix.leaderboards.rebuild-interval-ms:600000}",
+            fixedDelayString = "${cineflix.leaderboards.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        Board rated = new Board();
+        for (MovieRating movie : movieRepository.findRatingsWithAtLeast(minReviews)) {
+            rated.set(movie.movieId(), movie.rating() != null ? movie.rating() : 0.0, movie.reviewCount());
+        }
+        Board recent = new Board();
+        for (MovieReviewCount movie : reviewRepository.countByMovieSince(LocalDateTime.now().minus(trendingWindow))) {
+            recent.set(movie.movieId(), movie.count(), movie.count().intValue());
+        }
+        synchronized (this) {
+            topRated = rated;
+            trending = recent;
+        }
+    }
+
+    /**
+     * Ids of the best rated movies with at least the configured number of reviews, best first.
+     */
+    public List<Integer> topRated(int limit) {
+        return topRated.first(limit);
+    }
+
+    /**
+     * Ids of the movies with the most reviews inside the trending window, most first.
+     */
+    public List<Integer> trending(int limit) {
+        return trending.first(limit);
+    }
+
+    public void ratingChanged(MovieRating movie) {
+        afterCommit(() -> {
+            synchronized (this) {
+                if (movie.reviewCount() >= minReviews) {
+                    topRated.set(movie.movieId(), movie.rating() != null ? movie.rating() : 0.0, movie.reviewCount());
+                } else {
+                    topRated.remove(movie.movieId());
+                }
+            }
+        });
+    }
+
+    public void reviewAdded(int movieId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                trending.add(movieId, 1);
+            }
+        });
+    }
+
+    public void reviewRemoved(int movieId, LocalDateTime createdAt) {
+        if (createdAt == null || createdAt.isBefore(LocalDateTime.now().minus(trendingWindow))) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (this) {
+                trending.add(movieId, -1);
+            }
+        });
+    }
+
+    public void movieRemoved(int movieId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                topRated.remove(movieId);
+                trending.remove(movieId);
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Entry(int movieId, double score, int reviewCount) {
+    }
+
+    // Highest score first; ties go to the movie with more reviews, then the lower id.
+    private static final Comparator<Entry> RANKING = Comparator.comparingDouble(Entry::score).reversed()
+            .thenComparing(Comparator.comparingInt(Entry::reviewCount).reversed())
+            .thenComparingInt(Entry::movieId);
+
+    /**
+     * A ranking plus its by-id lookup. Writers are serialized on the enclosing
+     * leaderboards; readers iterate the skip list without locking.
+     */
+    private static final class Board {
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING);
+        private final ConcurrentHashMap<Integer, Entry> byId = new ConcurrentHashMap<>();
+
+        void set(int movieId, double score, int reviewCount) {
+            Entry next = new Entry(movieId, score, reviewCount);
+            Entry previous = byId.put(movieId, next);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            ranking.add(next);
+        }
+
+        void add(int movieId, int delta) {
+            Entry current = byId.get(movieId);
+            int count = (current != null ? current.reviewCount() : 0) + delta;
+            if (count > 0) {
+                set(movieId, count, count);
+            } else {
+                remove(movieId);
+            }
+        }
+
+        void remove(int movieId) {
+            Entry previous = byId.remove(movieId);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+        }
+
+        List<Integer> first(int limit) {
+            List<Integer> ids = new ArrayList<>(Math.min(limit, byId.size()));
+            Iterator<Entry> it = ranking.iterator();
+            while (ids.size() < limit && it.hasNext()) {
+                ids.add(it.next().movieId());
+            }
+            return ids;
+        }
+    }
+}
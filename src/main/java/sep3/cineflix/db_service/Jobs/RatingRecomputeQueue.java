@@ -0,0 +1,197 @@
+package sep3.cineflix.db_service.Jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Index.MovieLeaderboards;
+import sep3.cineflix.db_service.Repositories.MovieRating;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in alternative to updating a movie's rating inside every review write.
+ * <p>
+ * Review writes only mark the movie dirty after they commit. A single worker
+ * drains the queue every window and recomputes each dirty movie once from its
+ * reviews, so a burst of reviews on one movie costs one UPDATE instead of one
+ * row lock per review. A movie already waiting in the queue is not queued
+ * again. When the queue is full, the writer recomputes its own movie inline
+ * rather than dropping the event. Whatever is still queued at shutdown is
+ * flushed before the application context closes.
+ */
+@Component
+public class RatingRecomputeQueue implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingRecomputeQueue.class);
+
+    private final MovieRepository movieRepository;
+    private final MovieResponseCache movieCache;
+    private final MovieLeaderboards leaderboards;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int batchSize;
+    private final long shutdownTimeoutMs;
+    private final BlockingQueue<Integer> queue;
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong inline = new AtomicLong();
+    private final AtomicLong recomputed = new AtomicLong();
+
+    private ScheduledExecutorService worker;
+
+    public RatingRecomputeQueue(MovieRepository movieRepository, MovieResponseCache movieCache,
+                                MovieLeaderboards leaderboards, PlatformTransactionManager transactionManager,
+                                @Value("${cineflix.ratings.async.enabled:false}") boolean enabled,
+                                @Value("${cineflix.ratings.async.window-ms:200}") long windowMs,
+                                @Value("${cineflix.ratings.async.queue-capacity:10000}") int capacity,
+                                @Value("${cineflix.ratings.async.batch-size:500}") int batchSize,
+                                @Value("${cineflix.ratings.async.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.movieRepository = movieRepository;
+        this.movieCache = movieCache;
+        this.leaderboards = leaderboards;
+        this.tx = new TransactionTemplate(transactionManager);
+        // the inline fallback runs in afterCommit(), where the writer's transaction is already over
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.batchSize = batchSize;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) {
+            worker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("rating-recompute").daemon().factory());
+            worker.scheduleWithFixedDelay(this::flushSafely, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        worker.shutdown();
+        if (!worker.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("Rating recompute worker did not stop within {} ms", shutdownTimeoutMs);
+        }
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the movie for recomputation once the current transaction (if any) commits.
+     */
+    public void markDirty(int movieId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(movieId);
+                }
+            });
+        } else {
+            offer(movieId);
+        }
+    }
+
+    private void offer(int movieId) {
+        if (!pending.add(movieId)) {
+            coalesced.incrementAndGet();
+            return;
+        }
+        if (queue.offer(movieId)) {
+            enqueued.incrementAndGet();
+            return;
+        }
+        pending.remove(movieId);
+        inline.incrementAndGet();
+        try {
+            recompute(List.of(movieId));
+        } catch (RuntimeException e) {
+            // the write itself committed; the hourly reconciliation repairs the rating
+            log.error("Inline rating recompute for movie {} failed", movieId, e);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // the hourly reconciliation repairs whatever this batch missed
+            log.error("Rating recompute batch failed", e);
+        }
+    }
+
+    private void flush() {
+        List<Integer> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            // clear before recomputing, so a review landing meanwhile queues the movie again
+            batch.forEach(pending::remove);
+            recompute(batch);
+            batch.clear();
+        }
+    }
+
+    private void recompute(List<Integer> movieIds) {
+        List<MovieRating> ratings = tx.execute(status -> {
+            movieRepository.recomputeRatingAggregates(movieIds);
+            return movieRepository.findRatingsByIdIn(movieIds);
+        });
+        for (MovieRating rating : ratings) {
+            movieCache.invalidate(rating.movieId(), rating.title());
+            leaderboards.ratingChanged(rating);
+        }
+        recomputed.addAndGet(movieIds.size());
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long enqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    public long inlineCount() {
+        return inline.get();
+    }
+
+    public long recomputedCount() {
+        return recomputed.get();
+    }
+}
@@ -0,0 +1,52 @@
+package sep3.cineflix.db_service.Jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Index.MovieLeaderboards;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+
+/**
+ * Review writes maintain movie ratings through deltas; this job recomputes the
+ * aggregates with a single GROUP BY and fixes any movie that has drifted
+ * (including rows that predate the ratingSum/reviewCount columns).
+ */
+@Component
+public class RatingReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingReconciliationJob.class);
+
+    private final MovieRepository movieRepository;
+    private final MovieResponseCache movieCache;
+    private final MovieLeaderboards leaderboards;
+
+    public RatingReconciliationJob(MovieRepository movieRepository, MovieResponseCache movieCache,
+                                   MovieLeaderboards leaderboards) {
+        this.movieRepository = movieRepository;
+        this.movieCache = movieCache;
+        this.leaderboards = leaderboards;
+    }
+
+    @Scheduled(initialDelayString = "${cineflix.ratings.reconcile.initial-delay-ms:10000}",
+            fixedDelayString = "${cineflix.ratings.reconcile.interval-ms:3600000}")
+    @Transactional
+    public void reconcile() {
+        int corrected = movieRepository.reconcileRatingAggregates();
+        if (corrected > 0) {
+            // until commit, readers (and the leaderboard scan) would still see the drifted ratings
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    movieCache.invalidateAll();
+                    leaderboards.rebuild();
+                }
+            });
+            log.info("Rating reconciliation corrected {} movie(s)", corrected);
+        }
+    }
+}
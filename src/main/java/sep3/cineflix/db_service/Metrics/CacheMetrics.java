@@ -0,0 +1,45 @@
+package sep3.cineflix.db_service.Metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Cache.UserCache;
+
+@Component
+public class CacheMetrics implements MeterBinder {
+
+    private final MovieResponseCache movieCache;
+    private final UserCache userCache;
+
+    public CacheMetrics(MovieResponseCache movieCache, UserCache userCache) {
+        this.movieCache = movieCache;
+        this.userCache = userCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cineflix.cache.gets", movieCache, MovieResponseCache::hitCount)
+                .tag("cache", "movies").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cineflix.cache.gets", movieCache, MovieResponseCache::missCount)
+                .tag("cache", "movies").tag("result", "miss").register(registry);
+        FunctionCounter.builder("cineflix.cache.evictions", movieCache, MovieResponseCache::evictionCount)
+                .tag("cache", "movies").register(registry);
+        Gauge.builder("cineflix.cache.size", movieCache, MovieResponseCache::size)
+                .tag("cache", "movies").register(registry);
+        FunctionCounter.builder("cineflix.cache.gets", movieCache, MovieResponseCache::serializedHitCount)
+                .tag("cache", "movies-serialized").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cineflix.cache.gets", movieCache, MovieResponseCache::serializedMissCount)
+                .tag("cache", "movies-serialized").tag("result", "miss").register(registry);
+        Gauge.builder("cineflix.cache.bytes", movieCache, MovieResponseCache::serializedBytes)
+                .tag("cache", "movies-serialized").register(registry);
+        FunctionCounter.builder("cineflix.cache.gets", userCache, UserCache::hitCount)
+                .tag("cache", "users").tag("result", "hit").register(registry);
+        FunctionCounter.builder("cineflix.cache.gets", userCache, UserCache::missCount)
+                .tag("cache", "users").tag("result", "miss").register(registry);
+        Gauge.builder("cineflix.cache.size", userCache, UserCache::size)
+                .tag("cache", "users").register(registry);
+    }
+}
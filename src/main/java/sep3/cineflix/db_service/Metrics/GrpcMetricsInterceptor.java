@@ -0,0 +1,133 @@
+package sep3.cineflix.db_service.Metrics;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records, per gRPC method: call latency (percentile histogram) tagged with the
+ * final status code, calls in flight, and request/response message sizes.
+ * A call is counted as finished when its listener completes or is cancelled,
+ * so calls the client abandons before the handler closes them are not leaked.
+ */
+@Component
+@GlobalServerInterceptor
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class GrpcMetricsInterceptor implements ServerInterceptor {
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public GrpcMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String service = call.getMethodDescriptor().getServiceName();
+        String method = call.getMethodDescriptor().getBareMethodName();
+        AtomicInteger active = inFlight.computeIfAbsent(service + "/" + method, key -> {
+            AtomicInteger gauge = new AtomicInteger();
+            Gauge.builder("grpc.server.calls.active", gauge, AtomicInteger::get)
+                    .tag("service", service)
+                    .tag("method", method)
+                    .register(registry);
+            return gauge;
+        });
+        DistributionSummary requestSize = messageSize("request", service, method);
+        DistributionSummary responseSize = messageSize("response", service, method);
+        Timer.Sample sample = Timer.start(registry);
+        active.incrementAndGet();
+        AtomicReference<Status.Code> closedWith = new AtomicReference<>();
+        AtomicBoolean finished = new AtomicBoolean();
+
+        ServerCall<ReqT, RespT> monitoredCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                if (message instanceof MessageLite lite) {
+                    responseSize.record(lite.getSerializedSize());
+                }
+                super.sendMessage(message);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                closedWith.set(status.getCode());
+                super.close(status, trailers);
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener = next.startCall(monitoredCall, headers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                if (message instanceof MessageLite lite) {
+                    requestSize.record(lite.getSerializedSize());
+                }
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onComplete() {
+                try {
+                    super.onComplete();
+                } finally {
+                    Status.Code code = closedWith.get();
+                    finish(code != null ? code : Status.Code.OK);
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    finish(Status.Code.CANCELLED);
+                }
+            }
+
+            private void finish(Status.Code code) {
+                if (!finished.compareAndSet(false, true)) {
+                    return;
+                }
+                active.decrementAndGet();
+                sample.stop(Timer.builder("grpc.server.calls")
+                        .description("Server-side gRPC call latency")
+                        .tag("service", service)
+                        .tag("method", method)
+                        .tag("status", code.name())
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+        };
+    }
+
+    private DistributionSummary messageSize(String direction, String service, String method) {
+        return DistributionSummary.builder("grpc.server.message.size")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .tag("service", service)
+                .tag("method", method)
+                .register(registry);
+    }
+}
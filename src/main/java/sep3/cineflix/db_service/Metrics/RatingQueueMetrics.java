@@ -0,0 +1,36 @@
+package sep3.cineflix.db_service.Metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import sep3.cineflix.db_service.Jobs.RatingRecomputeQueue;
+
+@Component
+public class RatingQueueMetrics implements MeterBinder {
+
+    private final RatingRecomputeQueue ratingQueue;
+
+    public RatingQueueMetrics(RatingRecomputeQueue ratingQueue) {
+        this.ratingQueue = ratingQueue;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!ratingQueue.isEnabled()) {
+            return;
+        }
+        Gauge.builder("cineflix.ratings.queue.depth", ratingQueue, RatingRecomputeQueue::depth).register(registry);
+        Gauge.builder("cineflix.ratings.queue.capacity", ratingQueue, RatingRecomputeQueue::capacity).register(registry);
+        FunctionCounter.builder("cineflix.ratings.queue.events", ratingQueue, RatingRecomputeQueue::enqueuedCount)
+                .tag("result", "enqueued").register(registry);
+        FunctionCounter.builder("cineflix.ratings.queue.events", ratingQueue, RatingRecomputeQueue::coalescedCount)
+                .tag("result", "coalesced").register(registry);
+        // queue full: the review writer recomputed its movie itself
+        FunctionCounter.builder("cineflix.ratings.queue.events", ratingQueue, RatingRecomputeQueue::inlineCount)
+                .tag("result", "inline").register(registry);
+        FunctionCounter.builder("cineflix.ratings.recomputed", ratingQueue, RatingRecomputeQueue::recomputedCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,89 @@
+package sep3.cineflix.db_service.Recommendations;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing int to float accumulator with linear probing, so scoring a
+ * row or a user touches no boxed values. Keys may be any int except
+ * {@link Integer#MIN_VALUE}. Not thread-safe.
+ */
+final class IntFloatMap {
+
+    interface Visitor {
+        void accept(int key, float value);
+    }
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private float[] values;
+    private int size;
+
+    IntFloatMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new float[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    void add(int key, float delta) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    float get(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0f;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                visitor.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        float[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new float[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                add(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    // ids are dense and sequential, so spread them before masking
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
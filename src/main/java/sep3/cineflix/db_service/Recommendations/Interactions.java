@@ -0,0 +1,250 @@
+package sep3.cineflix.db_service.Recommendations;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who interacted with which movie, indexed both ways. Each (user, movie) pair
+ * keeps its sources (favorite, watchlist, review) and review rating rather than
+ * a running weight, so every update sets state and replaying one twice is
+ * harmless.
+ * <p>
+ * Entry arrays are never modified in place: writers (serialized on this object)
+ * swap in new ones, so readers need no locking.
+ */
+final class Interactions {
+
+    static final byte FAVORITE = 1;
+    static final byte WATCHLIST = 2;
+    static final byte REVIEW = 4;
+
+    record Weights(float favorite, float watchlist, float likedReview, double likedRating) {
+        float of(byte sources, float rating) {
+            float weight = 0f;
+            if ((sources & FAVORITE) != 0) {
+                weight += favorite;
+            }
+            if ((sources & WATCHLIST) != 0) {
+                weight += watchlist;
+            }
+            if ((sources & REVIEW) != 0 && rating >= likedRating) {
+                weight += likedReview;
+            }
+            return weight;
+        }
+    }
+
+    /**
+     * One user's movies or one movie's users, sorted by id. A weight of 0 means
+     * "seen, but no positive signal" (a low review).
+     */
+    record Entries(int[] ids, byte[] sources, float[] ratings, float[] weights, float norm) {
+        static final Entries EMPTY = new Entries(new int[0], new byte[0], new float[0], new float[0], 0f);
+
+        int size() {
+            return ids.length;
+        }
+
+        int indexOf(int id) {
+            return Arrays.binarySearch(ids, id);
+        }
+    }
+
+    private final Weights weights;
+    private final ConcurrentHashMap<Integer, Entries> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Entries> byMovie = new ConcurrentHashMap<>();
+
+    Interactions(Weights weights) {
+        this.weights = weights;
+    }
+
+    Entries user(int userId) {
+        return byUser.getOrDefault(userId, Entries.EMPTY);
+    }
+
+    Entries movie(int movieId) {
+        return byMovie.getOrDefault(movieId, Entries.EMPTY);
+    }
+
+    /**
+     * Adds the sources in {@code set} and removes those in {@code clear}; {@code rating}
+     * replaces the stored review rating when {@code set} contains {@link #REVIEW}.
+     */
+    synchronized void update(int userId, int movieId, byte set, byte clear, float rating) {
+        Entries userEntries = user(userId);
+        int position = userEntries.indexOf(movieId);
+        byte sources = position >= 0 ? userEntries.sources()[position] : 0;
+        float current = position >= 0 ? userEntries.ratings()[position] : 0f;
+        byte next = (byte) ((sources & ~clear) | set);
+        float nextRating = (set & REVIEW) != 0 ? rating : current;
+        put(byUser, userId, with(userEntries, movieId, next, nextRating));
+        put(byMovie, movieId, with(movie(movieId), userId, next, nextRating));
+    }
+
+    synchronized void removeUser(int userId) {
+        Entries removed = byUser.remove(userId);
+        if (removed != null) {
+            for (int movieId : removed.ids()) {
+                put(byMovie, movieId, with(movie(movieId), userId, (byte) 0, 0f));
+            }
+        }
+    }
+
+    synchronized void removeMovie(int movieId) {
+        Entries removed = byMovie.remove(movieId);
+        if (removed != null) {
+            for (int userId : removed.ids()) {
+                put(byUser, userId, with(user(userId), movieId, (byte) 0, 0f));
+            }
+        }
+    }
+
+    private static void put(ConcurrentHashMap<Integer, Entries> index, int key, Entries entries) {
+        if (entries.size() == 0) {
+            index.remove(key);
+        } else {
+            index.put(key, entries);
+        }
+    }
+
+    // Copy of the entries with id set to the given state; sources of 0 removes it.
+    private Entries with(Entries entries, int id, byte sources, float rating) {
+        int position = entries.indexOf(id);
+        int size = entries.size();
+        if (position < 0 && sources == 0) {
+            return entries;
+        }
+        int[] ids;
+        byte[] sourceArray;
+        float[] ratings;
+        if (position >= 0 && sources != 0) {
+            ids = entries.ids();
+            sourceArray = entries.sources().clone();
+            ratings = entries.ratings().clone();
+            sourceArray[position] = sources;
+            ratings[position] = rating;
+        } else if (position >= 0) {
+            ids = new int[size - 1];
+            sourceArray = new byte[size - 1];
+            ratings = new float[size - 1];
+            copyWithout(entries, position, ids, sourceArray, ratings);
+        } else {
+            int insertAt = -position - 1;
+            ids = new int[size + 1];
+            sourceArray = new byte[size + 1];
+            ratings = new float[size + 1];
+            System.arraycopy(entries.ids(), 0, ids, 0, insertAt);
+            System.arraycopy(entries.sources(), 0, sourceArray, 0, insertAt);
+            System.arraycopy(entries.ratings(), 0, ratings, 0, insertAt);
+            ids[insertAt] = id;
+            sourceArray[insertAt] = sources;
+            ratings[insertAt] = rating;
+            System.arraycopy(entries.ids(), insertAt, ids, insertAt + 1, size - insertAt);
+            System.arraycopy(entries.sources(), insertAt, sourceArray, insertAt + 1, size - insertAt);
+            System.arraycopy(entries.ratings(), insertAt, ratings, insertAt + 1, size - insertAt);
+        }
+        return entries(ids, sourceArray, ratings);
+    }
+
+    // ids must be sorted and distinct
+    private Entries entries(int[] ids, byte[] sources, float[] ratings) {
+        float[] weightArray = new float[ids.length];
+        double sumOfSquares = 0;
+        for (int i = 0; i < ids.length; i++) {
+            weightArray[i] = weights.of(sources[i], ratings[i]);
+            sumOfSquares += weightArray[i] * weightArray[i];
+        }
+        return new Entries(ids, sources, ratings, weightArray, (float) Math.sqrt(sumOfSquares));
+    }
+
+    private static void copyWithout(Entries entries, int position, int[] ids, byte[] sources, float[] ratings) {
+        int tail = entries.size() - position - 1;
+        System.arraycopy(entries.ids(), 0, ids, 0, position);
+        System.arraycopy(entries.sources(), 0, sources, 0, position);
+        System.arraycopy(entries.ratings(), 0, ratings, 0, position);
+        System.arraycopy(entries.ids(), position + 1, ids, position, tail);
+        System.arraycopy(entries.sources(), position + 1, sources, position, tail);
+        System.arraycopy(entries.ratings(), position + 1, ratings, position, tail);
+    }
+
+    /**
+     * Bulk loader for a rebuild: row-by-row {@link #update} would copy the
+     * entries of a popular movie once per user.
+     */
+    static final class Loader {
+        private final Weights weights;
+        private final Map<Integer, Rows> users = new HashMap<>();
+
+        Loader(Weights weights) {
+            this.weights = weights;
+        }
+
+        void add(int userId, int movieId, byte source, float rating) {
+            users.computeIfAbsent(userId, id -> new Rows()).add(movieId, source, rating);
+        }
+
+        Interactions build() {
+            Interactions interactions = new Interactions(weights);
+            Map<Integer, Rows> movies = new HashMap<>();
+            int[] userIds = users.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            for (int userId : userIds) {
+                Rows merged = users.remove(userId).sortedAndMerged();
+                interactions.byUser.put(userId, merged.toEntries(interactions));
+                // users are visited in id order, so every movie's rows come out sorted
+                for (int i = 0; i < merged.size; i++) {
+                    movies.computeIfAbsent(merged.ids[i], id -> new Rows()).add(userId, merged.sources[i], merged.ratings[i]);
+                }
+            }
+            movies.forEach((movieId, rows) -> interactions.byMovie.put(movieId, rows.toEntries(interactions)));
+            return interactions;
+        }
+    }
+
+    private static final class Rows {
+        private int[] ids = new int[4];
+        private byte[] sources = new byte[4];
+        private float[] ratings = new float[4];
+        private int size;
+
+        void add(int id, byte source, float rating) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                sources = Arrays.copyOf(sources, size * 2);
+                ratings = Arrays.copyOf(ratings, size * 2);
+            }
+            ids[size] = id;
+            sources[size] = source;
+            ratings[size] = rating;
+            size++;
+        }
+
+        // Sorts by id and folds repeated ids into one row, the way update() would.
+        Rows sortedAndMerged() {
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(order);
+            Rows merged = new Rows();
+            for (long key : order) {
+                int i = (int) key;
+                int last = merged.size - 1;
+                if (last >= 0 && merged.ids[last] == ids[i]) {
+                    merged.sources[last] |= sources[i];
+                    if ((sources[i] & REVIEW) != 0) {
+                        merged.ratings[last] = ratings[i];
+                    }
+                } else {
+                    merged.add(ids[i], sources[i], ratings[i]);
+                }
+            }
+            return merged;
+        }
+
+        Entries toEntries(Interactions interactions) {
+            return interactions.entries(Arrays.copyOf(ids, size), Arrays.copyOf(sources, size), Arrays.copyOf(ratings, size));
+        }
+    }
+}
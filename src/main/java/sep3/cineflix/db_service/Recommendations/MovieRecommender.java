@@ -0,0 +1,492 @@
+package sep3.cineflix.db_service.Recommendations;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Config.ReplicaRoutingDataSource;
+import sep3.cineflix.db_service.Index.MovieFacetIndex;
+import sep3.cineflix.db_service.Index.MovieFacetIndex.Facet;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Item-item recommendations. Every movie keeps its most similar movies, where
+ * similarity blends the cosine of the users' weighted favorites, watchlist
+ * entries and liked reviews with the cosine of shared genres, directors and
+ * actors (weighted by rarity). A user's recommendations are the neighbours of
+ * their strongest movies, minus movies they already have.
+ * <p>
+ * The neighbour lists are held in flat int/float arrays and rebuilt on a
+ * background thread. Library and review writes update the interactions right
+ * after they commit, so a user's own history is always current, and mark the
+ * movie for the next incremental refresh, which recomputes that movie's list.
+ * Lists of other movies pick up the change at the next full rebuild, as do
+ * new movies' genre/director/actor overlap.
+ */
+@Component
+public class MovieRecommender implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MovieRecommender.class);
+
+    record Row(int[] ids, float[] scores) {
+    }
+
+    // Neighbour lists in CSR form: the list of movieIds[i] is neighbors/scores[offsets[i]..offsets[i + 1]).
+    private record Model(int[] movieIds, int[] offsets, int[] neighbors, float[] scores, Content content) {
+    }
+
+    // Facet values shared by at least two movies: postings[v] are movie ids, values[offsets[i]..] the values of movieIds[i].
+    private record Content(int[] movieIds, int[] offsets, int[] values, float[] norms, int[][] postings, float[] idf) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate loadTx;
+    private final MovieFacetIndex facetIndex;
+    private final Interactions.Weights weights;
+    private final int neighbors;
+    private final int maxSeeds;
+    private final int maxUserItems;
+    private final int maxFacetSize;
+    private final float collaborativeWeight;
+    private final float contentWeight;
+    private final long refreshIntervalMs;
+    private final long rebuildIntervalMs;
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, Row> refreshed = new ConcurrentHashMap<>();
+
+    private volatile Interactions interactions;
+    private volatile Model model;
+    // updates seen while a rebuild is loading, replayed onto the loaded interactions; guarded by this
+    private List<Consumer<Interactions>> replay;
+    private ScheduledExecutorService worker;
+
+    // The EntityManagerFactory is only injected so that Hibernate's DDL has run before the tables are read.
+    public MovieRecommender(DataSource dataSource, PlatformTransactionManager transactionManager,
+                            EntityManagerFactory entityManagerFactory, MovieFacetIndex facetIndex,
+                            @Value("${cineflix.recommendations.neighbors:50}") int neighbors,
+                            @Value("${cineflix.recommendations.max-seeds:200}") int maxSeeds,
+                            @Value("${cineflix.recommendations.max-user-items:500}") int maxUserItems,
+                            @Value("${cineflix.recommendations.max-facet-size:500}") int maxFacetSize,
+                            @Value("${cineflix.recommendations.collaborative-weight:0.7}") float collaborativeWeight,
+                            @Value("${cineflix.recommendations.content-weight:0.3}") float contentWeight,
+                            @Value("${cineflix.recommendations.weights.favorite:3}") float favoriteWeight,
+                            @Value("${cineflix.recommendations.weights.watchlist:1}") float watchlistWeight,
+                            @Value("${cineflix.recommendations.weights.liked-review:2}") float likedReviewWeight,
+                            @Value("${cineflix.recommendations.liked-rating:4}") double likedRating,
+                            @Value("${cineflix.recommendations.refresh-interval-ms:30000}") long refreshIntervalMs,
+                            @Value("${cineflix.recommendations.rebuild-interval-ms:3600000}") long rebuildIntervalMs) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // PostgreSQL only honours the fetch size inside a transaction, hence loadTx
+        this.jdbcTemplate.setFetchSize(10_000);
+        this.loadTx = new TransactionTemplate(transactionManager);
+        this.loadTx.setReadOnly(true);
+        // a lagging replica could miss writes committed before the replay log was started
+        this.loadTx.setName(ReplicaRoutingDataSource.PRIMARY_READ);
+        this.facetIndex = facetIndex;
+        this.weights = new Interactions.Weights(favoriteWeight, watchlistWeight, likedReviewWeight, likedRating);
+        this.neighbors = neighbors;
+        this.maxSeeds = maxSeeds;
+        this.maxUserItems = maxUserItems;
+        this.maxFacetSize = maxFacetSize;
+        this.collaborativeWeight = collaborativeWeight;
+        this.contentWeight = contentWeight;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.rebuildIntervalMs = rebuildIntervalMs;
+        this.interactions = new Interactions(weights);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // one thread, so a refresh never overlaps a rebuild
+        worker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("recommendations").daemon().factory());
+        worker.scheduleWithFixedDelay(() -> run("rebuild", this::rebuild), 0, rebuildIntervalMs, TimeUnit.MILLISECONDS);
+        worker.scheduleWithFixedDelay(() -> run("refresh", this::refresh), refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Up to {@code limit} movie ids for the user, best first; empty until the first
+     * model is built or when the user has no positive history.
+     */
+    public List<Integer> recommend(int userId, int limit) {
+        Model current = model;
+        Interactions.Entries profile = interactions.user(userId);
+        if (current == null || profile.size() == 0) {
+            return List.of();
+        }
+        TopK seeds = new TopK(maxSeeds);
+        for (int i = 0; i < profile.size(); i++) {
+            if (profile.weights()[i] > 0f) {
+                seeds.offer(profile.ids()[i], profile.weights()[i]);
+            }
+        }
+        Row strongest = seeds.sorted();
+        IntFloatMap scores = new IntFloatMap(strongest.ids().length * neighbors);
+        for (int s = 0; s < strongest.ids().length; s++) {
+            int seed = strongest.ids()[s];
+            float weight = strongest.scores()[s];
+            Row row = refreshed.get(seed);
+            if (row != null) {
+                accumulate(scores, row.ids(), row.scores(), 0, row.ids().length, weight);
+            } else {
+                int index = Arrays.binarySearch(current.movieIds(), seed);
+                if (index >= 0) {
+                    accumulate(scores, current.neighbors(), current.scores(),
+                            current.offsets()[index], current.offsets()[index + 1], weight);
+                }
+            }
+        }
+        TopK top = new TopK(limit);
+        scores.forEach((movieId, score) -> {
+            if (profile.indexOf(movieId) < 0) {
+                top.offer(movieId, score);
+            }
+        });
+        int[] ids = top.sorted().ids();
+        List<Integer> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    public void favoriteChanged(int userId, int movieId, boolean present) {
+        sourceChanged(userId, movieId, Interactions.FAVORITE, present);
+    }
+
+    public void watchlistChanged(int userId, int movieId, boolean present) {
+        sourceChanged(userId, movieId, Interactions.WATCHLIST, present);
+    }
+
+    public void reviewed(int userId, int movieId, double rating) {
+        afterCommit(() -> {
+            apply(i -> i.update(userId, movieId, Interactions.REVIEW, (byte) 0, (float) rating));
+            dirty.add(movieId);
+        });
+    }
+
+    public void reviewRemoved(int userId, int movieId) {
+        sourceChanged(userId, movieId, Interactions.REVIEW, false);
+    }
+
+    public void userRemoved(int userId) {
+        afterCommit(() -> {
+            for (int movieId : interactions.user(userId).ids()) {
+                dirty.add(movieId);
+            }
+            apply(i -> i.removeUser(userId));
+        });
+    }
+
+    public void movieRemoved(int movieId) {
+        afterCommit(() -> {
+            apply(i -> i.removeMovie(movieId));
+            dirty.remove(movieId);
+            refreshed.remove(movieId);
+        });
+    }
+
+    void rebuild() {
+        long started = System.nanoTime();
+        synchronized (this) {
+            replay = new ArrayList<>();
+        }
+        Interactions.Loader loader = new Interactions.Loader(weights);
+        Interactions loaded = null;
+        int[] movieIds;
+        try {
+            movieIds = loadTx.execute(status -> {
+                jdbcTemplate.query("SELECT user_id, movie_id FROM user_favorites", (RowCallbackHandler) rs ->
+                        loader.add(rs.getInt(1), rs.getInt(2), Interactions.FAVORITE, 0f));
+                jdbcTemplate.query("SELECT user_id, movie_id FROM user_watchlist", (RowCallbackHandler) rs ->
+                        loader.add(rs.getInt(1), rs.getInt(2), Interactions.WATCHLIST, 0f));
+                // in id order, so a user's latest review of a movie wins
+                jdbcTemplate.query("SELECT user_id, movie_id, rating FROM reviews ORDER BY id", (RowCallbackHandler) rs ->
+                        loader.add(rs.getInt(1), rs.getInt(2), Interactions.REVIEW, (float) rs.getDouble(3)));
+                return jdbcTemplate.queryForList("SELECT id FROM movies ORDER BY id", Integer.class).stream()
+                        .mapToInt(Integer::intValue).toArray();
+            });
+            loaded = loader.build();
+        } finally {
+            synchronized (this) {
+                if (loaded != null) {
+                    for (Consumer<Interactions> update : replay) {
+                        update.accept(loaded);
+                    }
+                    interactions = loaded;
+                }
+                replay = null;
+            }
+        }
+
+        Content content = buildContent(movieIds);
+        int[] offsets = new int[movieIds.length + 1];
+        int[] neighborIds = new int[movieIds.length * neighbors];
+        float[] scores = new float[movieIds.length * neighbors];
+        for (int i = 0; i < movieIds.length; i++) {
+            Row row = computeRow(movieIds[i], interactions, content);
+            System.arraycopy(row.ids(), 0, neighborIds, offsets[i], row.ids().length);
+            System.arraycopy(row.scores(), 0, scores, offsets[i], row.ids().length);
+            offsets[i + 1] = offsets[i] + row.ids().length;
+        }
+        int total = offsets[movieIds.length];
+        model = new Model(movieIds, offsets, Arrays.copyOf(neighborIds, total), Arrays.copyOf(scores, total), content);
+        refreshed.clear();
+        log.info("Recommendation model rebuilt for {} movies in {} ms", movieIds.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    void refresh() {
+        Model current = model;
+        if (current == null) {
+            return;
+        }
+        for (Integer movieId : dirty) {
+            dirty.remove(movieId);
+            refreshed.put(movieId, computeRow(movieId, interactions, current.content()));
+        }
+    }
+
+    private Row computeRow(int movieId, Interactions source, Content content) {
+        Interactions.Entries users = source.movie(movieId);
+        IntFloatMap collaborative = new IntFloatMap(256);
+        for (int u = 0; u < users.size(); u++) {
+            float weight = users.weights()[u];
+            Interactions.Entries items = source.user(users.ids()[u]);
+            // very large libraries say little about any one movie and dominate the cost
+            if (weight == 0f || items.size() > maxUserItems) {
+                continue;
+            }
+            for (int i = 0; i < items.size(); i++) {
+                if (items.ids()[i] != movieId && items.weights()[i] != 0f) {
+                    collaborative.add(items.ids()[i], weight * items.weights()[i]);
+                }
+            }
+        }
+
+        IntFloatMap shared = new IntFloatMap(256);
+        int index = Arrays.binarySearch(content.movieIds(), movieId);
+        if (index >= 0) {
+            for (int k = content.offsets()[index]; k < content.offsets()[index + 1]; k++) {
+                int value = content.values()[k];
+                float idf = content.idf()[value];
+                for (int other : content.postings()[value]) {
+                    if (other != movieId) {
+                        shared.add(other, idf * idf);
+                    }
+                }
+            }
+        }
+
+        IntFloatMap similarity = new IntFloatMap(collaborative.size() + shared.size());
+        float norm = users.norm();
+        if (norm > 0f) {
+            collaborative.forEach((other, dot) -> {
+                float otherNorm = source.movie(other).norm();
+                if (otherNorm > 0f) {
+                    similarity.add(other, collaborativeWeight * dot / (norm * otherNorm));
+                }
+            });
+        }
+        if (index >= 0 && content.norms()[index] > 0f) {
+            float contentNorm = content.norms()[index];
+            shared.forEach((other, dot) -> {
+                int otherIndex = Arrays.binarySearch(content.movieIds(), other);
+                if (otherIndex >= 0 && content.norms()[otherIndex] > 0f) {
+                    similarity.add(other, contentWeight * dot / (contentNorm * content.norms()[otherIndex]));
+                }
+            });
+        }
+        TopK top = new TopK(neighbors);
+        similarity.forEach(top::offer);
+        return top.sorted();
+    }
+
+    // Values that almost every movie shares carry no signal and would make each row touch the whole catalogue.
+    private Content buildContent(int[] movieIds) {
+        int movieCount = movieIds.length;
+        List<int[]> postings = new ArrayList<>();
+        int[] valueCounts = new int[movieCount];
+        for (Facet facet : Facet.values()) {
+            facetIndex.forEachValue(facet, (value, ids) -> {
+                if (ids.length < 2 || ids.length > maxFacetSize) {
+                    return;
+                }
+                postings.add(ids);
+                for (int id : ids) {
+                    int index = Arrays.binarySearch(movieIds, id);
+                    if (index >= 0) {
+                        valueCounts[index]++;
+                    }
+                }
+            });
+        }
+        int[] offsets = new int[movieCount + 1];
+        for (int i = 0; i < movieCount; i++) {
+            offsets[i + 1] = offsets[i] + valueCounts[i];
+        }
+        int[] values = new int[offsets[movieCount]];
+        int[] next = Arrays.copyOf(offsets, movieCount);
+        float[] idf = new float[postings.size()];
+        double[] sumOfSquares = new double[movieCount];
+        for (int value = 0; value < postings.size(); value++) {
+            int[] ids = postings.get(value);
+            idf[value] = (float) Math.log((double) Math.max(movieCount, ids.length) / ids.length);
+            for (int id : ids) {
+                int index = Arrays.binarySearch(movieIds, id);
+                if (index >= 0) {
+                    values[next[index]++] = value;
+                    sumOfSquares[index] += idf[value] * idf[value];
+                }
+            }
+        }
+        float[] norms = new float[movieCount];
+        for (int i = 0; i < movieCount; i++) {
+            norms[i] = (float) Math.sqrt(sumOfSquares[i]);
+        }
+        return new Content(movieIds, offsets, values, norms, postings.toArray(new int[0][]), idf);
+    }
+
+    private void sourceChanged(int userId, int movieId, byte source, boolean present) {
+        afterCommit(() -> {
+            apply(i -> i.update(userId, movieId, present ? source : 0, present ? 0 : source, 0f));
+            dirty.add(movieId);
+        });
+    }
+
+    private synchronized void apply(Consumer<Interactions> update) {
+        update.accept(interactions);
+        if (replay != null) {
+            replay.add(update);
+        }
+    }
+
+    private void run(String task, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            log.warn("Recommendation model {} failed", task, e);
+        }
+    }
+
+    private static void accumulate(IntFloatMap scores, int[] ids, float[] similarities, int from, int to, float weight) {
+        for (int i = from; i < to; i++) {
+            scores.add(ids[i], weight * similarities[i]);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Bounded min-heap keeping the highest-scoring ids.
+    private static final class TopK {
+        private final int[] ids;
+        private final float[] scores;
+        private int size;
+
+        TopK(int capacity) {
+            ids = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        void offer(int id, float score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && score > scores[0]) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        // Empties the heap, highest score first.
+        Row sorted() {
+            int count = size;
+            int[] sortedIds = new int[count];
+            float[] sortedScores = new float[count];
+            for (int i = count - 1; i >= 0; i--) {
+                sortedIds[i] = ids[0];
+                sortedScores[i] = scores[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return new Row(sortedIds, sortedScores);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
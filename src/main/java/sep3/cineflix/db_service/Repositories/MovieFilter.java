@@ -0,0 +1,41 @@
+package sep3.cineflix.db_service.Repositories;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Criteria for {@link MovieQueryRepository#findFilteredPage}. Facet sets match
+ * movies carrying every listed value; null bounds are not applied and range
+ * bounds are inclusive.
+ */
+public record MovieFilter(Set<String> genres,
+                          Set<String> directors,
+                          Set<String> actors,
+                          Double minRating,
+                          Double maxRating,
+                          LocalDate releasedFrom,
+                          LocalDate releasedTo,
+                          Integer minRunTime,
+                          Integer maxRunTime) {
+
+    public enum SortKey {
+        ID("id"),
+        RATING("rating"),
+        RELEASE_DATE("releaseDate"),
+        RUN_TIME("runTime"),
+        TITLE("title");
+
+        final String attribute;
+
+        SortKey(String attribute) {
+            this.attribute = attribute;
+        }
+    }
+
+    /**
+     * One row of a filtered page: the movie id and its value for the sort key, which
+     * together form the keyset cursor for the next page.
+     */
+    public record Row(Integer id, Object sortValue) {
+    }
+}
@@ -0,0 +1,13 @@
+package sep3.cineflix.db_service.Repositories;
+
+import java.util.List;
+
+public interface MovieQueryRepository {
+    /**
+     * Runs the filter as a single SQL statement, ordered by {@code sort} then id and
+     * starting after the row ({@code afterValue}, {@code afterId}); pass a null
+     * {@code afterId} for the first page.
+     */
+    List<MovieFilter.Row> findFilteredPage(MovieFilter filter, MovieFilter.SortKey sort, boolean descending,
+                                           Object afterValue, Integer afterId, int limit);
+}
@@ -0,0 +1,96 @@
+package sep3.cineflix.db_service.Repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import sep3.cineflix.db_service.Entities.Movie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Picked up by Spring Data as the implementation of the MovieQueryRepository fragment of MovieRepository.
+class MovieQueryRepositoryImpl implements MovieQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<MovieFilter.Row> findFilteredPage(MovieFilter filter, MovieFilter.SortKey sort, boolean descending,
+                                                  Object afterValue, Integer afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Movie> movie = query.from(Movie.class);
+        Path<Integer> id = movie.get("id");
+        Path<Comparable<Object>> sortPath = movie.get(sort.attribute);
+
+        List<Predicate> where = new ArrayList<>();
+        // "value member of m.genres" becomes a correlated subquery on the collection table, one per value
+        memberOfAll(cb, where, movie.get("genres"), filter.genres());
+        memberOfAll(cb, where, movie.get("directors"), filter.directors());
+        memberOfAll(cb, where, movie.get("actors"), filter.actors());
+        if (filter.minRating() != null) {
+            where.add(cb.greaterThanOrEqualTo(movie.get("rating"), filter.minRating()));
+        }
+        if (filter.maxRating() != null) {
+            where.add(cb.lessThanOrEqualTo(movie.get("rating"), filter.maxRating()));
+        }
+        if (filter.releasedFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(movie.get("releaseDate"), filter.releasedFrom()));
+        }
+        if (filter.releasedTo() != null) {
+            where.add(cb.lessThanOrEqualTo(movie.get("releaseDate"), filter.releasedTo()));
+        }
+        if (filter.minRunTime() != null) {
+            where.add(cb.greaterThanOrEqualTo(movie.get("runTime"), filter.minRunTime()));
+        }
+        if (filter.maxRunTime() != null) {
+            where.add(cb.lessThanOrEqualTo(movie.get("runTime"), filter.maxRunTime()));
+        }
+        if (afterId != null) {
+            where.add(after(cb, sort, descending, sortPath, id, afterValue, afterId));
+        }
+
+        query.multiselect(id, sortPath).where(where.toArray(new Predicate[0]));
+        if (sort == MovieFilter.SortKey.ID) {
+            query.orderBy(descending ? cb.desc(id) : cb.asc(id));
+        } else {
+            query.orderBy(descending ? cb.desc(sortPath) : cb.asc(sortPath), descending ? cb.desc(id) : cb.asc(id));
+        }
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(row -> new MovieFilter.Row(row.get(0, Integer.class), row.get(1)))
+                .toList();
+    }
+
+    private static void memberOfAll(CriteriaBuilder cb, List<Predicate> where,
+                                    Expression<Collection<String>> collection, Collection<String> values) {
+        if (values != null) {
+            for (String value : values) {
+                where.add(cb.isMember(value, collection));
+            }
+        }
+    }
+
+    // (sort, id) > (afterValue, afterId) in the requested direction
+    private static Predicate after(CriteriaBuilder cb, MovieFilter.SortKey sort, boolean descending,
+                                   Path<Comparable<Object>> sortPath, Path<Integer> id,
+                                   Object afterValue, Integer afterId) {
+        if (sort == MovieFilter.SortKey.ID) {
+            return descending ? cb.lessThan(id, afterId) : cb.greaterThan(id, afterId);
+        }
+        @SuppressWarnings("unchecked")
+        Comparable<Object> value = (Comparable<Object>) afterValue;
+        Predicate beyond = descending ? cb.lessThan(sortPath, value) : cb.greaterThan(sortPath, value);
+        Predicate tie = cb.and(cb.equal(sortPath, value), descending ? cb.lessThan(id, afterId) : cb.greaterThan(id, afterId));
+        return cb.or(beyond, tie);
+    }
+}
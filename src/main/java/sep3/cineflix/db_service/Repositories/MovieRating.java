@@ -0,0 +1,7 @@
+package sep3.cineflix.db_service.Repositories;
+
+/**
+ * The rating aggregate of a movie, without loading the entity or its collections.
+ */
+public record MovieRating(Integer movieId, String title, Double rating, Integer reviewCount) {
+}
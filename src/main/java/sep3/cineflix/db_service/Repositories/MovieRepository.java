@@ -1,32 +1,87 @@
 package sep3.cineflix.db_service.Repositories;
 
-import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import sep3.cineflix.db_service.Entities.Movie;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
 @Repository
-public interface MovieRepository extends JpaRepository<Movie, Integer> {
-    @EntityGraph(attributePaths = {"genres", "directors", "actors"})
+public interface MovieRepository extends JpaRepository<Movie, Integer>, MovieQueryRepository {
+    // Element collections are lazy and batch-fetched (see Movie); initialize them inside a transaction.
     Optional<Movie> findByTitle(String title);
 
-    @EntityGraph(attributePaths = {"genres", "directors", "actors"})
     List<Movie> findByGenresContaining(String genre);
 
-    @EntityGraph(attributePaths = {"genres", "directors", "actors"})
     List<Movie> findByDirectorsContaining(String director);
 
-    @EntityGraph(attributePaths = {"genres", "directors", "actors"})
     List<Movie> findByActorsContaining(String actor);
 
-    @EntityGraph(attributePaths = {"genres", "directors", "actors"})
-    List<Movie> findAll();
+    List<Movie> findByIdIn(Collection<Integer> ids);
 
-    @EntityGraph(attributePaths = {"genres", "directors", "actors"})
-    Optional<Movie> findById(Integer id);
+    @Query("select m.id from Movie m where m.id > :afterId order by m.id")
+    List<Integer> findIdsAfter(@Param("afterId") Integer afterId, Limit limit);
 
     boolean existsByTitle(String title);
+
+    @Query("select m.title from Movie m where m.id = :id")
+    Optional<String> findTitleById(@Param("id") Integer id);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.MovieRating(m.id, m.title, m.rating, m.reviewCount) from Movie m where m.id = :id")
+    Optional<MovieRating> findRatingById(@Param("id") Integer id);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.MovieRating(m.id, m.title, m.rating, m.reviewCount) " +
+            "from Movie m where m.reviewCount >= :minReviews")
+    List<MovieRating> findRatingsWithAtLeast(@Param("minReviews") int minReviews);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.MovieRating(m.id, m.title, m.rating, m.reviewCount) " +
+            "from Movie m where m.id in :ids")
+    List<MovieRating> findRatingsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update Movie m set m.ratingSum = m.ratingSum + :sumDelta, m.reviewCount = m.reviewCount + :countDelta, " +
+            "m.rating = case when m.reviewCount + :countDelta > 0 " +
+            "then (m.ratingSum + :sumDelta) / (m.reviewCount + :countDelta) else 0.0 end " +
+            "where m.id = :movieId")
+    int applyRatingDelta(@Param("movieId") Integer movieId, @Param("sumDelta") double sumDelta, @Param("countDelta") int countDelta);
+
+    // Recomputes the aggregates of the given movies from their reviews in one statement.
+    @Modifying(flushAutomatically = true)
+    @Query("update Movie m set " +
+            "m.ratingSum = coalesce((select sum(r.rating) from Review r where r.movie = m), 0.0), " +
+            "m.reviewCount = (select count(r) from Review r where r.movie = m), " +
+            "m.rating = coalesce((select avg(r.rating) from Review r where r.movie = m), 0.0) " +
+            "where m.id in :ids")
+    int recomputeRatingAggregates(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query(value = "UPDATE movies m SET rating_sum = a.total, review_count = a.cnt, " +
+            "rating = CASE WHEN a.cnt > 0 THEN a.total / a.cnt ELSE 0 END " +
+            "FROM (SELECT mv.id AS movie_id, COALESCE(SUM(r.rating), 0) AS total, COUNT(r.id) AS cnt " +
+            "      FROM movies mv LEFT JOIN reviews r ON r.movie_id = mv.id GROUP BY mv.id) a " +
+            "WHERE m.id = a.movie_id AND (m.review_count <> a.cnt OR abs(m.rating_sum - a.total) > 1e-6)",
+            nativeQuery = true)
+    int reconcileRatingAggregates();
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE movies SET search_document = movie_search_document(id) WHERE id IN (:ids)", nativeQuery = true)
+    int refreshSearchDocuments(@Param("ids") Collection<Integer> ids);
+
+    @Query(value = "SELECT m.id FROM movies m " +
+            "WHERE m.search_document @@ to_tsquery('simple', :tsQuery) " +
+            "   OR lower(m.title) LIKE :pattern " +
+            "   OR lower(m.title) % :term " +
+            "ORDER BY ts_rank(m.search_document, to_tsquery('simple', :tsQuery)) + similarity(lower(m.title), :term) DESC, m.id " +
+            "LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<Integer> searchIds(@Param("tsQuery") String tsQuery, @Param("term") String term, @Param("pattern") String pattern,
+                            @Param("limit") int limit, @Param("offset") int offset);
 }
\ No newline at end of file
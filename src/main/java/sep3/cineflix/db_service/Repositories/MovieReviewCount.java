@@ -0,0 +1,4 @@
+package sep3.cineflix.db_service.Repositories;
+
+public record MovieReviewCount(Integer movieId, Long count) {
+}
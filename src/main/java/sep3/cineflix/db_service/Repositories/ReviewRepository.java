@@ -1,9 +1,15 @@
 package sep3.cineflix.db_service.Repositories;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import sep3.cineflix.db_service.Entities.Review;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +18,37 @@ public interface ReviewRepository extends JpaRepository<Review, Integer> {
     List<Review> findByUserId(Integer userId);
     void deleteByUserId(Integer userId);
 
-}
\ No newline at end of file
+    @Query("select distinct r.movie.id from Review r where r.user.id in :userIds")
+    List<Integer> findMovieIdsByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    @Modifying
+    @Query("delete from Review r where r.user.id in :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    long countByMovieId(Integer movieId);
+    long countByUserId(Integer userId);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.ReviewRow(r.id, r.movie.id, r.user.id, r.text, r.rating) " +
+            "from Review r where r.movie.id = :movieId and r.id < :beforeId order by r.id desc")
+    List<ReviewRow> findMoviePageNewest(@Param("movieId") Integer movieId, @Param("beforeId") Integer beforeId, Limit limit);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.ReviewRow(r.id, r.movie.id, r.user.id, r.text, r.rating) " +
+            "from Review r where r.movie.id = :movieId " +
+            "and (r.rating < :rating or (r.rating = :rating and r.id < :beforeId)) order by r.rating desc, r.id desc")
+    List<ReviewRow> findMoviePageByRating(@Param("movieId") Integer movieId, @Param("rating") Double rating,
+                                          @Param("beforeId") Integer beforeId, Limit limit);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.ReviewRow(r.id, r.movie.id, r.user.id, r.text, r.rating) " +
+            "from Review r where r.user.id = :userId and r.id < :beforeId order by r.id desc")
+    List<ReviewRow> findUserPageNewest(@Param("userId") Integer userId, @Param("beforeId") Integer beforeId, Limit limit);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.ReviewRow(r.id, r.movie.id, r.user.id, r.text, r.rating) " +
+            "from Review r where r.user.id = :userId " +
+            "and (r.rating < :rating or (r.rating = :rating and r.id < :beforeId)) order by r.rating desc, r.id desc")
+    List<ReviewRow> findUserPageByRating(@Param("userId") Integer userId, @Param("rating") Double rating,
+                                         @Param("beforeId") Integer beforeId, Limit limit);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.MovieReviewCount(r.movie.id, count(r)) " +
+            "from Review r where r.createdAt >= :since group by r.movie.id")
+    List<MovieReviewCount> countByMovieSince(@Param("since") LocalDateTime since);
+}
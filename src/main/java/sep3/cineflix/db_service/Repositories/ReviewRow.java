@@ -0,0 +1,7 @@
+package sep3.cineflix.db_service.Repositories;
+
+/**
+ * Column projection of a review, so listings never load the Movie or User behind it.
+ */
+public record ReviewRow(Integer id, Integer movieId, Integer userId, String text, Double rating) {
+}
@@ -1,15 +1,45 @@
 package sep3.cineflix.db_service.Repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import sep3.cineflix.db_service.Entities.UserFavorites;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UserFavoritesRepository extends JpaRepository<UserFavorites, Integer> {
     List<UserFavorites> findByUserId(Integer userId);
-    void deleteByUserId(Integer userId);
-    void deleteByUserIdAndMovieId(Integer userId, Integer movieId);
+
+    @Query("select f.movie.id from UserFavorites f where f.user.id = :userId")
+    List<Integer> findMovieIdsByUserId(@Param("userId") Integer userId);
+
+    // One statement: inserts only if both user and movie exist and the link is new; returns 0 otherwise.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO user_favorites (user_id, movie_id, added_on) " +
+            "SELECT u.id, m.id, :addedOn FROM users u, movies m WHERE u.id = :userId AND m.id = :movieId " +
+            "ON CONFLICT (user_id, movie_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Integer userId, @Param("movieId") Integer movieId, @Param("addedOn") LocalDateTime addedOn);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserFavorites f where f.user.id = :userId")
+    void deleteByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query("delete from UserFavorites f where f.user.id in :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserFavorites f where f.user.id = :userId and f.movie.id = :movieId")
+    int deleteByUserIdAndMovieId(@Param("userId") Integer userId, @Param("movieId") Integer movieId);
+
     boolean existsByUserIdAndMovieId(Integer userId, Integer movieId);
 }
\ No newline at end of file
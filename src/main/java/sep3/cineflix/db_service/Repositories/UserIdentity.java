@@ -0,0 +1,7 @@
+package sep3.cineflix.db_service.Repositories;
+
+/**
+ * The keys a user can be looked up by.
+ */
+public record UserIdentity(Integer id, String email, String username) {
+}
@@ -1,9 +1,14 @@
 package sep3.cineflix.db_service.Repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import sep3.cineflix.db_service.Entities.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +21,14 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     boolean existsByEmail(String email);
 
     boolean existsByUsername(String username);
+
+    List<User> findByIdIn(Collection<Integer> ids);
+
+    @Query("select new sep3.cineflix.db_service.Repositories.UserIdentity(u.id, u.email, u.username) " +
+            "from User u where u.id in :ids")
+    List<UserIdentity> findIdentitiesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -1,15 +1,45 @@
 package sep3.cineflix.db_service.Repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import sep3.cineflix.db_service.Entities.UserWatchList;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UserWatchListRepository extends JpaRepository<UserWatchList, Integer> {
     List<UserWatchList> findByUserId(Integer userId);
-    void deleteByUserId(Integer userId);
-    void deleteByUserIdAndMovieId(Integer userId, Integer movieId);
+
+    @Query("select w.movie.id from UserWatchList w where w.user.id = :userId")
+    List<Integer> findMovieIdsByUserId(@Param("userId") Integer userId);
+
+    // One statement: inserts only if both user and movie exist and the link is new; returns 0 otherwise.
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO user_watchlist (user_id, movie_id, added_on) " +
+            "SELECT u.id, m.id, :addedOn FROM users u, movies m WHERE u.id = :userId AND m.id = :movieId " +
+            "ON CONFLICT (user_id, movie_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Integer userId, @Param("movieId") Integer movieId, @Param("addedOn") LocalDateTime addedOn);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserWatchList w where w.user.id = :userId")
+    void deleteByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query("delete from UserWatchList w where w.user.id in :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserWatchList w where w.user.id = :userId and w.movie.id = :movieId")
+    int deleteByUserIdAndMovieId(@Param("userId") Integer userId, @Param("movieId") Integer movieId);
+
     boolean existsByUserIdAndMovieId(Integer userId, Integer movieId);
 }
\ No newline at end of file
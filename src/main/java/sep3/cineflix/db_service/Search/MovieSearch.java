@@ -0,0 +1,63 @@
+package sep3.cineflix.db_service.Search;
+
+import org.springframework.stereotype.Component;
+import sep3.cineflix.db_service.Config.PostgresSchemaExtensions;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ranked movie search over the {@code search_document} tsvector (title, directors,
+ * actors, description) plus trigram matching on titles. Every query term is
+ * matched as a prefix, so this also serves typeahead.
+ */
+@Component
+public class MovieSearch {
+
+    private final MovieRepository movieRepository;
+    private final PostgresSchemaExtensions schemaExtensions;
+
+    public MovieSearch(MovieRepository movieRepository, PostgresSchemaExtensions schemaExtensions) {
+        this.movieRepository = movieRepository;
+        this.schemaExtensions = schemaExtensions;
+    }
+
+    /**
+     * Rebuilds the search documents of the given movies; call in the transaction that changed them.
+     */
+    public void refresh(Collection<Integer> movieIds) {
+        if (schemaExtensions.isPostgres() && !movieIds.isEmpty()) {
+            movieRepository.refreshSearchDocuments(movieIds);
+        }
+    }
+
+    public List<Integer> search(String query, int limit, int offset) {
+        String term = query.trim().toLowerCase(Locale.ROOT);
+        String tsQuery = toPrefixTsQuery(term);
+        if (tsQuery.isEmpty()) {
+            return List.of();
+        }
+        if (!schemaExtensions.isPostgres()) {
+            throw new IllegalStateException("Movie search requires PostgreSQL");
+        }
+        return movieRepository.searchIds(tsQuery, term, "%" + escapeLike(term) + "%", limit, offset);
+    }
+
+    // "dark kni" -> "dark:* & kni:*"; only letters and digits survive, so the result is always valid tsquery syntax
+    static String toPrefixTsQuery(String term) {
+        List<String> parts = new ArrayList<>();
+        for (String token : term.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                parts.add(token + ":*");
+            }
+        }
+        return String.join(" & ", parts);
+    }
+
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
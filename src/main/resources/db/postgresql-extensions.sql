@@ -0,0 +1,30 @@
+-- PostgreSQL-only schema objects, applied by PostgresSchemaExtensions after Hibernate's ddl-auto.
+-- Every statement must be idempotent; function bodies use single quotes because the script is split on ';'.
+
+-- Full-text and trigram search (SearchMovies)
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE movies ADD COLUMN IF NOT EXISTS search_document tsvector;
+
+CREATE OR REPLACE FUNCTION movie_search_document(integer) RETURNS tsvector LANGUAGE sql STABLE AS '
+    SELECT setweight(to_tsvector(''simple'', coalesce(m.title, '''')), ''A'')
+        || setweight(to_tsvector(''simple'', coalesce((SELECT string_agg(d.director, '' '') FROM movie_directors d WHERE d.movie_id = m.id), '''')), ''B'')
+        || setweight(to_tsvector(''simple'', coalesce((SELECT string_agg(a.actor, '' '') FROM movie_actors a WHERE a.movie_id = m.id), '''')), ''B'')
+        || setweight(to_tsvector(''simple'', coalesce(${description_text}, '''')), ''C'')
+    FROM movies m WHERE m.id = $1
+';
+
+CREATE INDEX IF NOT EXISTS movies_search_document_idx ON movies USING gin (search_document);
+CREATE INDEX IF NOT EXISTS movies_title_trgm_idx ON movies USING gin (lower(title) gin_trgm_ops);
+
+UPDATE movies SET search_document = movie_search_document(id) WHERE search_document IS NULL;
+
+-- Library links: ON CONFLICT (user_id, movie_id) needs the unique index, which Hibernate cannot add while duplicates exist
+DELETE FROM user_favorites a USING user_favorites b WHERE a.user_id = b.user_id AND a.movie_id = b.movie_id AND a.id > b.id;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_user_favorites_user_movie ON user_favorites (user_id, movie_id);
+DELETE FROM user_watchlist a USING user_watchlist b WHERE a.user_id = b.user_id AND a.movie_id = b.movie_id AND a.id > b.id;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_user_watchlist_user_movie ON user_watchlist (user_id, movie_id);
+
+-- Ratings: the (rating, id) keyset in QueryMovies needs a value on every row, including movies created before it had a default
+ALTER TABLE movies ALTER COLUMN rating SET DEFAULT 0;
+UPDATE movies SET rating = 0 WHERE rating IS NULL;
@@ -0,0 +1,69 @@
+package sep3.cineflix.db_service.Cache;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import sep3.cineflix.db_service.Config.RecentWrites;
+import sep3.cineflix.grpc.MovieResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieResponseCacheTests {
+
+    private final MovieResponseCache cache = new MovieResponseCache(new RecentWrites(1_000, 5_000, 1_000), 1_000, 600, 1 << 20);
+
+    @Test
+    void invalidationDuringAFillOnlyDropsThatMovie() {
+        Map<Integer, ByteString> first = cache.getAllSerializedById(List.of(1, 2, 3), ids -> {
+            // a concurrent write to movie 2 lands while the fill is reading
+            cache.invalidate(2, "Movie 2");
+            return movies(ids);
+        });
+        assertThat(first).containsOnlyKeys(1, 2, 3);
+
+        List<Integer> reloaded = new ArrayList<>();
+        cache.getAllSerializedById(List.of(1, 2, 3), ids -> {
+            reloaded.addAll(ids);
+            return movies(ids);
+        });
+        assertThat(reloaded).containsExactly(2);
+    }
+
+    @Test
+    void invalidateAllDropsAFillThatStartedBeforeIt() {
+        cache.getAllSerializedById(List.of(1, 2), ids -> {
+            cache.invalidateAll();
+            return movies(ids);
+        });
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getAllSerializedById(List.of(1, 2), ids -> {
+            loads.addAndGet(ids.size());
+            return movies(ids);
+        });
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void aFillAfterAnInvalidationIsCached() {
+        cache.invalidate(1, "Movie 1");
+        cache.getAllSerializedById(List.of(1), MovieResponseCacheTests::movies);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getAllSerializedById(List.of(1), ids -> {
+            loads.addAndGet(ids.size());
+            return movies(ids);
+        });
+        assertThat(loads).hasValue(0);
+    }
+
+    private static List<MovieResponse> movies(List<Integer> ids) {
+        return ids.stream()
+                .map(id -> MovieResponse.newBuilder().setId(id).setTitle("Movie " + id).build())
+                .toList();
+    }
+}
@@ -0,0 +1,60 @@
+package sep3.cineflix.db_service.Cache;
+
+import org.junit.jupiter.api.Test;
+import sep3.cineflix.grpc.UserResponse;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCacheTests {
+
+    private final UserCache cache = new UserCache(1_000, 300, 30);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void evictingAnotherUserDuringAFillKeepsTheFill() {
+        cache.getById(1, () -> {
+            // a concurrent write to user 2 lands while the fill is reading
+            cache.invalidate(2, "user2@example.com", "user2");
+            return load(1);
+        });
+
+        cache.getById(1, () -> load(1));
+        cache.getByEmail("user1@example.com", () -> load(1));
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void evictingTheUserDuringAFillDropsTheFill() {
+        cache.getById(1, () -> {
+            cache.invalidate(1, "user1@example.com", "user1");
+            return load(1);
+        });
+
+        cache.getById(1, () -> load(1));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void creatingAUserDuringAMissDropsTheCachedMiss() {
+        cache.getByEmail("user3@example.com", () -> {
+            cache.invalidate(3, "user3@example.com", "user3");
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+
+        cache.getByEmail("user3@example.com", () -> load(3));
+        assertThat(loads).hasValue(2);
+    }
+
+    private Optional<UserResponse> load(int id) {
+        loads.incrementAndGet();
+        return Optional.of(UserResponse.newBuilder()
+                .setId(id)
+                .setEmail("user" + id + "@example.com")
+                .setUsername("user" + id)
+                .build());
+    }
+}
@@ -0,0 +1,122 @@
+package sep3.cineflix.db_service.Changes;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeFeedTests {
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private DataSourceTransactionManager transactionManager;
+    private ChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:changes" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        // as in production: anything not committed explicitly is rolled back
+        dataSource.setAutoCommit(false);
+        jdbc = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbc.execute(
+                "CREATE TABLE outbox_events (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                        "subject VARCHAR(16) NOT NULL, operation VARCHAR(16) NOT NULL, entity_id INT NOT NULL, " +
+                        "related_id INT, created_at TIMESTAMP NOT NULL)"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (feed != null) {
+            feed.destroy();
+        }
+        dataSource.close();
+    }
+
+    @Test
+    void purgeCommitsEveryBatchUntilNothingIsPastRetention() {
+        insert(LocalDateTime.now().minusHours(2), 1, 2, 3, 4, 5, 6, 7);
+        insert(LocalDateTime.now(), 8, 9);
+        feed = feed(10_000, 3);
+
+        feed.purge();
+
+        assertThat(jdbc.queryForList("SELECT id FROM outbox_events ORDER BY id", Long.class)).containsExactly(8L, 9L);
+    }
+
+    @Test
+    void cursorWaitsAtAGapUntilItIsFilled() {
+        insert(LocalDateTime.now(), 1, 2, 4);
+        feed = feed(60_000, 100);
+        ChangeFeed.Cursor cursor = feed.cursor(0);
+
+        assertThat(sequences(cursor.next(10))).containsExactly(1L, 2L);
+        assertThat(cursor.next(10)).isEmpty();
+
+        insert(LocalDateTime.now(), 3);
+        assertThat(sequences(cursor.next(10))).containsExactly(3L, 4L);
+        assertThat(cursor.position()).isEqualTo(4);
+    }
+
+    @Test
+    void cursorSkipsAGapOnceTheEventAfterItOutlivesTheTimeout() {
+        insert(LocalDateTime.now(), 1);
+        insert(LocalDateTime.now().minusSeconds(5), 3);
+        feed = feed(2_000, 100);
+
+        assertThat(sequences(feed.cursor(0).next(10))).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void replayStepsOverOldHolesWithoutWaiting() {
+        LocalDateTime lastWeek = LocalDateTime.now().minusDays(7);
+        insert(lastWeek, 1, 3, 5, 7);
+        insert(LocalDateTime.now(), 8, 10);
+        feed = feed(60_000, 100);
+
+        // the old holes were settled long ago; the recent one at 9 may still fill
+        assertThat(sequences(feed.cursor(0).next(10))).containsExactly(1L, 3L, 5L, 7L, 8L);
+    }
+
+    @Test
+    void latestSettledStopsBelowARecentHole() {
+        insert(LocalDateTime.now().minusDays(1), 1, 2, 4);
+        insert(LocalDateTime.now(), 5, 6, 8, 9);
+        feed = feed(60_000, 100);
+
+        assertThat(feed.latestSettled()).isEqualTo(6);
+
+        insert(LocalDateTime.now(), 7);
+        assertThat(feed.latestSettled()).isEqualTo(9);
+    }
+
+    private ChangeFeed feed(long gapTimeoutMs, int purgeBatchSize) {
+        ChangeFeed changeFeed = new ChangeFeed(jdbc, transactionManager, null, 3_600_000, gapTimeoutMs, 1, purgeBatchSize);
+        changeFeed.afterPropertiesSet();
+        return changeFeed;
+    }
+
+    private void insert(LocalDateTime createdAt, long... ids) {
+        List<Object[]> rows = new ArrayList<>();
+        for (long id : ids) {
+            rows.add(new Object[]{id, "MOVIE", "UPDATED", (int) id, Timestamp.valueOf(createdAt)});
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbc.batchUpdate(
+                "INSERT INTO outbox_events (id, subject, operation, entity_id, created_at) VALUES (?, ?, ?, ?, ?)", rows));
+    }
+
+    private static List<Long> sequences(List<ChangeFeed.Event> events) {
+        return events.stream().map(ChangeFeed.Event::sequence).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import sep3.cineflix.db_service.Changes.ChangeOutbox;
+import sep3.cineflix.db_service.Config.RecentWrites;
+import sep3.cineflix.db_service.Config.ReplicaRoutingDataSource;
+import sep3.cineflix.db_service.Entities.Movie;
+import sep3.cineflix.db_service.Entities.User;
+import sep3.cineflix.db_service.Entities.UserFavorites;
+import sep3.cineflix.db_service.Entities.UserRole;
+import sep3.cineflix.db_service.Recommendations.MovieRecommender;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+import sep3.cineflix.db_service.Repositories.UserFavoritesRepository;
+import sep3.cineflix.db_service.Repositories.UserRepository;
+import sep3.cineflix.grpc.userlibrary.GetFavoritesRequest;
+import sep3.cineflix.grpc.userlibrary.GetFavoritesResponse;
+import sep3.cineflix.grpc.userlibrary.RemoveFavoriteRequest;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+// The primary and the replica pool point at the same H2 database, so only the routing differs.
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserLibraryServiceImpl.class, ChangeOutbox.class, RecentWrites.class, ReplicaReadsTests.Routing.class})
+class ReplicaReadsTests {
+
+    private static final String URL = "jdbc:h2:mem:replica-reads;DB_CLOSE_DELAY=-1";
+
+    @TestConfiguration
+    static class Routing {
+
+        @Bean
+        ReplicaRoutingDataSource replicaRoutingDataSource() {
+            return new ReplicaRoutingDataSource(pool("primary"), List.of(pool("replica-0")), 1_000);
+        }
+
+        @Bean
+        @Primary
+        LazyConnectionDataSourceProxy dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+            return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+        }
+
+        private static HikariDataSource pool(String name) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setJdbcUrl(URL);
+            pool.setPoolName("test-" + name);
+            return pool;
+        }
+    }
+
+    @Autowired
+    private UserLibraryServiceImpl library;
+
+    @Autowired
+    private ReplicaRoutingDataSource routing;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private UserFavoritesRepository favoritesRepository;
+
+    @MockitoBean
+    private MovieRecommender recommender;
+
+    @AfterEach
+    void tearDown() {
+        favoritesRepository.deleteAll();
+        movieRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void favoritesAreListedFromAReplica() {
+        User user = userRepository.save(user("neil", "neil@example.com"));
+        Movie heat = favorite(user, "Heat");
+        long before = routing.replicaConnectionCount();
+
+        assertThat(favorites(user)).containsExactly(heat.getId());
+        assertThat(routing.replicaConnectionCount()).isGreaterThan(before);
+    }
+
+    @Test
+    void favoritesAreListedFromThePrimaryRightAfterTheUserChangesThem() {
+        User user = userRepository.save(user("vincent", "vincent@example.com"));
+        Movie heat = favorite(user, "Heat");
+        Movie thief = favorite(user, "Thief");
+        library.removeFavorite(RemoveFavoriteRequest.newBuilder().setUserId(user.getId()).setMovieId(heat.getId()).build(),
+                observer());
+        long before = routing.replicaConnectionCount();
+
+        assertThat(favorites(user)).containsExactly(thief.getId());
+        assertThat(routing.replicaConnectionCount()).isEqualTo(before);
+    }
+
+    private List<Integer> favorites(User user) {
+        StreamObserver<GetFavoritesResponse> observer = observer();
+        library.getFavorites(GetFavoritesRequest.newBuilder().setUserId(user.getId()).build(), observer);
+        ArgumentCaptor<GetFavoritesResponse> response = ArgumentCaptor.forClass(GetFavoritesResponse.class);
+        verify(observer).onNext(response.capture());
+        return response.getValue().getMovieIdsList();
+    }
+
+    private Movie favorite(User user, String title) {
+        Movie movie = movieRepository.save(Movie.builder()
+                .title(title)
+                .runTime(170)
+                .releaseDate(LocalDate.of(1995, 12, 15))
+                .build());
+        favoritesRepository.save(new UserFavorites(null, user, movie, LocalDateTime.now()));
+        return movie;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> StreamObserver<T> observer() {
+        return mock(StreamObserver.class);
+    }
+
+    private static User user(String username, String email) {
+        return new User(null, username, email, "hash", UserRole.USER, null);
+    }
+}
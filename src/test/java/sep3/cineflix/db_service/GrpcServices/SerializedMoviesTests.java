@@ -0,0 +1,30 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import sep3.cineflix.grpc.GetAllMoviesResponse;
+import sep3.cineflix.grpc.MovieResponse;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerializedMoviesTests {
+
+    @Test
+    void cachedBytesDecodeAsTheMoviesField() throws Exception {
+        MovieResponse first = MovieResponse.newBuilder().setId(1).setTitle("Heat").addGenres("Crime").setRating(8.3).build();
+        MovieResponse second = MovieResponse.newBuilder().setId(2).setTitle("Ronin").addActors("Jean Reno").build();
+        List<ByteString> cached = List.of(first.toByteString(), second.toByteString());
+
+        GetAllMoviesResponse sent = GetAllMoviesResponse.newBuilder()
+                .setUnknownFields(SerializedMovies.asField(GetAllMoviesResponse.MOVIES_FIELD_NUMBER, cached))
+                .setTotalCount(2)
+                .build();
+        GetAllMoviesResponse received = GetAllMoviesResponse.parseFrom(sent.toByteArray());
+
+        assertThat(received.getMoviesList()).containsExactly(first, second);
+        assertThat(received.getTotalCount()).isEqualTo(2);
+        assertThat(received.getUnknownFields().asMap()).isEmpty();
+    }
+}
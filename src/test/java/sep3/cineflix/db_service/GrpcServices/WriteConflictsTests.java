@@ -0,0 +1,147 @@
+package sep3.cineflix.db_service.GrpcServices;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import sep3.cineflix.db_service.Entities.Movie;
+import sep3.cineflix.db_service.Entities.User;
+import sep3.cineflix.db_service.Entities.UserFavorites;
+import sep3.cineflix.db_service.Entities.UserRole;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+import sep3.cineflix.db_service.Repositories.UserFavoritesRepository;
+import sep3.cineflix.db_service.Repositories.UserRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+// Every write commits on its own, as in the services, so the test methods run outside a test transaction.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WriteConflictsTests {
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserFavoritesRepository favoritesRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        favoritesRepository.deleteAll();
+        movieRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void duplicateTitleIsAlreadyExists() {
+        movieRepository.saveAndFlush(movie("Heat"));
+
+        DataIntegrityViolationException e = catchThrowableOfType(DataIntegrityViolationException.class,
+                () -> movieRepository.saveAndFlush(movie("Heat")));
+        StatusRuntimeException status = WriteConflicts.alreadyExists(e);
+
+        assertThat(status.getStatus().getCode()).isEqualTo(Status.Code.ALREADY_EXISTS);
+        assertThat(status.getStatus().getDescription()).isEqualTo("Title already exists");
+    }
+
+    @Test
+    void duplicateEmailIsAlreadyExists() {
+        userRepository.saveAndFlush(user("neil", "neil@example.com"));
+
+        DataIntegrityViolationException e = catchThrowableOfType(DataIntegrityViolationException.class,
+                () -> userRepository.saveAndFlush(user("mccauley", "neil@example.com")));
+        StatusRuntimeException status = WriteConflicts.alreadyExists(e);
+
+        assertThat(status.getStatus().getCode()).isEqualTo(Status.Code.ALREADY_EXISTS);
+        assertThat(status.getStatus().getDescription()).isEqualTo("Email already in use");
+    }
+
+    @Test
+    void deletingAReferencedMovieIsAFailedPrecondition() {
+        Movie movie = movieRepository.saveAndFlush(movie("Ronin"));
+        User user = userRepository.saveAndFlush(user("sam", "sam@example.com"));
+        favoritesRepository.saveAndFlush(new UserFavorites(null, user, movie, LocalDateTime.now()));
+
+        // the foreign key only fails at the flush on commit, as in deleteMovie
+        DataIntegrityViolationException e = catchThrowableOfType(DataIntegrityViolationException.class,
+                () -> tx.executeWithoutResult(status -> movieRepository.deleteById(movie.getId())));
+        StatusRuntimeException status = WriteConflicts.stillReferenced(e, "Movie");
+
+        assertThat(status.getStatus().getCode()).isEqualTo(Status.Code.FAILED_PRECONDITION);
+        assertThat(status.getStatus().getDescription()).isEqualTo("Movie is still referenced");
+        assertThat(movieRepository.existsById(movie.getId())).isTrue();
+    }
+
+    @Test
+    void expectedVersionMismatchIsAbortedWithoutRetrying() {
+        User user = userRepository.saveAndFlush(user("vincent", "vincent@example.com"));
+        tx.executeWithoutResult(status -> userRepository.findById(user.getId()).orElseThrow().setUsername("hanna"));
+        AtomicInteger attempts = new AtomicInteger();
+
+        StatusRuntimeException e = catchThrowableOfType(StatusRuntimeException.class, () -> WriteConflicts.withRetry(tx, 3, status -> {
+            attempts.incrementAndGet();
+            User current = userRepository.findById(user.getId()).orElseThrow();
+            if (current.getVersion() != 0L) {
+                throw WriteConflicts.versionMismatch(0L, current.getVersion());
+            }
+            return current;
+        }));
+
+        assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.ABORTED);
+        assertThat(e.getStatus().getDescription()).isEqualTo("Version mismatch: expected 0 but found 1");
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void staleWriteIsRetriedUntilTheAttemptsRunOut() {
+        User stale = userRepository.saveAndFlush(user("chris", "chris@example.com"));
+        tx.executeWithoutResult(status -> userRepository.findById(stale.getId()).orElseThrow().setUsername("charlene"));
+        AtomicInteger attempts = new AtomicInteger();
+
+        StatusRuntimeException e = catchThrowableOfType(StatusRuntimeException.class, () -> WriteConflicts.withRetry(tx, 3, status -> {
+            attempts.incrementAndGet();
+            return userRepository.saveAndFlush(stale);
+        }));
+
+        assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.ABORTED);
+        assertThat(attempts).hasValue(3);
+    }
+
+    private static Movie movie(String title) {
+        return Movie.builder()
+                .title(title)
+                .runTime(170)
+                .releaseDate(LocalDate.of(1995, 12, 15))
+                .build();
+    }
+
+    private static User user(String username, String email) {
+        return new User(null, username, email, "hash", UserRole.USER, null);
+    }
+}
@@ -0,0 +1,65 @@
+package sep3.cineflix.db_service.Index;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import sep3.cineflix.db_service.Index.MovieFacetIndex.Facet;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieFacetIndexTests {
+
+    private HikariDataSource dataSource;
+    private MovieFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:facets" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE movie_genres (movie_id INT NOT NULL, genre VARCHAR(255))");
+        jdbc.execute("CREATE TABLE movie_directors (movie_id INT NOT NULL, director VARCHAR(255))");
+        jdbc.execute("CREATE TABLE movie_actors (movie_id INT NOT NULL, actor VARCHAR(255))");
+        jdbc.update("INSERT INTO movie_genres VALUES (1, 'Crime'), (2, 'Crime'), (2, 'Drama'), (3, 'Drama')");
+        jdbc.update("INSERT INTO movie_directors VALUES (1, 'Michael Mann'), (2, 'Michael Mann')");
+        jdbc.update("INSERT INTO movie_actors VALUES (1, 'Al Pacino'), (2, 'James Caan')");
+        index = new MovieFacetIndex(jdbc, null);
+        index.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void removeDropsTheMovieFromItsOwnPostingsOnly() {
+        index.remove(2);
+
+        assertThat(index.ids(Facet.GENRE, "Crime")).containsExactly(1);
+        assertThat(index.ids(Facet.GENRE, "Drama")).containsExactly(3);
+        assertThat(index.ids(Facet.DIRECTOR, "Michael Mann")).containsExactly(1);
+        assertThat(index.ids(Facet.ACTOR, "James Caan")).isEmpty();
+        assertThat(index.ids(Facet.ACTOR, "Al Pacino")).containsExactly(1);
+    }
+
+    @Test
+    void putReplacesTheValuesTheMovieWasIndexedUnder() {
+        index.put(1, List.of("Thriller"), List.of("Michael Mann"), List.of("Robert De Niro"));
+
+        assertThat(index.ids(Facet.GENRE, "Crime")).containsExactly(2);
+        assertThat(index.ids(Facet.GENRE, "Thriller")).containsExactly(1);
+        assertThat(index.ids(Facet.DIRECTOR, "Michael Mann")).containsExactly(1, 2);
+        assertThat(index.ids(Facet.ACTOR, "Al Pacino")).isEmpty();
+
+        index.remove(1);
+
+        assertThat(index.ids(Facet.GENRE, "Thriller")).isEmpty();
+        assertThat(index.ids(Facet.ACTOR, "Robert De Niro")).isEmpty();
+        assertThat(index.ids(Facet.DIRECTOR, "Michael Mann")).containsExactly(2);
+    }
+}
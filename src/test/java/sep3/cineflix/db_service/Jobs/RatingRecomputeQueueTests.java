@@ -0,0 +1,71 @@
+package sep3.cineflix.db_service.Jobs;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import sep3.cineflix.db_service.Cache.MovieResponseCache;
+import sep3.cineflix.db_service.Index.MovieLeaderboards;
+import sep3.cineflix.db_service.Repositories.MovieRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class RatingRecomputeQueueTests {
+
+    private final MovieRepository movieRepository = mock(MovieRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @Test
+    void coalescesAMovieThatIsAlreadyQueued() {
+        RatingRecomputeQueue queue = queue(10);
+
+        queue.markDirty(1);
+        queue.markDirty(1);
+        queue.markDirty(2);
+
+        assertThat(queue.depth()).isEqualTo(2);
+        assertThat(queue.enqueuedCount()).isEqualTo(2);
+        assertThat(queue.coalescedCount()).isEqualTo(1);
+        verify(movieRepository, never()).recomputeRatingAggregates(any());
+    }
+
+    @Test
+    void recomputesInlineInANewTransactionWhenTheQueueIsFull() {
+        RatingRecomputeQueue queue = queue(1);
+
+        queue.markDirty(1);
+        queue.markDirty(2);
+
+        assertThat(queue.inlineCount()).isEqualTo(1);
+        verify(movieRepository).recomputeRatingAggregates(List.of(2));
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().getPropagationBehavior()).isEqualTo(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Test
+    void flushesWhateverIsQueuedOnShutdown() throws InterruptedException {
+        RatingRecomputeQueue queue = queue(10);
+        queue.afterPropertiesSet();
+        queue.markDirty(1);
+        queue.markDirty(2);
+
+        queue.destroy();
+
+        verify(movieRepository).recomputeRatingAggregates(List.of(1, 2));
+        assertThat(queue.depth()).isZero();
+        assertThat(queue.recomputedCount()).isEqualTo(2);
+    }
+
+    // a one-hour window keeps the worker from draining the queue during the test
+    private RatingRecomputeQueue queue(int capacity) {
+        return new RatingRecomputeQueue(movieRepository, mock(MovieResponseCache.class), mock(MovieLeaderboards.class),
+                transactionManager, true, 3_600_000, capacity, 500, 1_000);
+    }
+}
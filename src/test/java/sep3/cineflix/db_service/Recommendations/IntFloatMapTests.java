@@ -0,0 +1,27 @@
+package sep3.cineflix.db_service.Recommendations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntFloatMapTests {
+
+    @Test
+    void accumulatesPerKeyAcrossResizes() {
+        IntFloatMap map = new IntFloatMap(4);
+        for (int i = 0; i < 1000; i++) {
+            map.add(i % 300, 1f);
+        }
+
+        assertThat(map.size()).isEqualTo(300);
+        assertThat(map.get(0)).isEqualTo(4f);
+        assertThat(map.get(299)).isEqualTo(3f);
+        assertThat(map.get(300)).isZero();
+        Map<Integer, Float> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertThat(visited).hasSize(300).containsEntry(150, 3f);
+    }
+}
@@ -0,0 +1,102 @@
+package sep3.cineflix.db_service.Repositories;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import sep3.cineflix.db_service.Entities.Movie;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class MovieRepositoryFetchTests {
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void findByIdLoadsEachCollectionWithItsOwnStatement() {
+        Movie movie = persistMovie("Heat", 5, 3, 40);
+        resetSession();
+
+        Movie loaded = movieRepository.findById(movie.getId()).orElseThrow();
+
+        assertThat(loaded.getGenres()).hasSize(5);
+        assertThat(loaded.getDirectors()).hasSize(3);
+        assertThat(loaded.getActors()).hasSize(40);
+        // one row per movie plus one per collection element, instead of 5 * 3 * 40 joined rows
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
+
+    @Test
+    void findAllBatchesCollectionsAcrossMovies() {
+        IntStream.range(0, 20).forEach(i -> persistMovie("Movie " + i, 5, 3, 40));
+        resetSession();
+
+        List<Movie> movies = movieRepository.findAll();
+        int elements = movies.stream()
+                .mapToInt(m -> m.getGenres().size() + m.getDirectors().size() + m.getActors().size())
+                .sum();
+
+        assertThat(movies).hasSize(20);
+        assertThat(elements).isEqualTo(20 * 48);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
+
+    @Test
+    void findByIdInUsesTheSameStatementCountForAnyNumberOfMovies() {
+        List<Integer> ids = IntStream.range(0, 50)
+                .mapToObj(i -> persistMovie("Batch " + i, 2, 1, 10).getId())
+                .collect(Collectors.toList());
+        resetSession();
+
+        List<Movie> movies = movieRepository.findByIdIn(ids);
+        movies.forEach(m -> m.getActors().size());
+
+        assertThat(movies).hasSize(50);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    private Movie persistMovie(String title, int genres, int directors, int actors) {
+        Movie movie = Movie.builder()
+                .title(title)
+                .genres(names(title + " genre ", genres))
+                .directors(names(title + " director ", directors))
+                .actors(names(title + " actor ", actors))
+                .runTime(120)
+                .releaseDate(LocalDate.of(1995, 12, 15))
+                .rating(0.0)
+                .build();
+        return entityManager.persist(movie);
+    }
+
+    private static Set<String> names(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).collect(Collectors.toSet());
+    }
+
+    private void resetSession() {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+}